@@ -61,6 +61,16 @@ public class AndroidCursor implements ICursor {
 		return cur.getInt(columnIndex);
 	}
 
+	@Override
+	public long getLong(int columnIndex) {
+		return cur.getLong(columnIndex);
+	}
+
+	@Override
+	public boolean isNull(int columnIndex) {
+		return cur.isNull(columnIndex);
+	}
+
 	@Override
 	public int getColumnCount() {
 		return cur.getColumnCount();
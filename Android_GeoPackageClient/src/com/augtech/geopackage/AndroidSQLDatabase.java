@@ -26,6 +26,7 @@ import android.database.sqlite.SQLiteOpenHelper;
 
 import com.augtech.geoapi.geopackage.ICursor;
 import com.augtech.geoapi.geopackage.ISQLDatabase;
+import com.augtech.geoapi.geopackage.ISQLStatement;
 /** An Android specific implementation of {@link ISQLDatabase} to
  * interact with the standard Android SQLite database implementation.<p>
  * Other SQLite implementation should utilise similar classes for the actual
@@ -79,6 +80,12 @@ public class AndroidSQLDatabase extends SQLiteOpenHelper implements ISQLDatabase
 	}
 	
 	
+	@Override
+	public ISQLStatement prepare(String sql) {
+		getDatabase(true);
+		return new AndroidSQLStatement(sqlDB, sql);
+	}
+	
 	@Override
 	public ICursor doQuery(String table, String[] columns, String strWhere) {
 		getDatabase(false);
@@ -198,6 +205,18 @@ public class AndroidSQLDatabase extends SQLiteOpenHelper implements ISQLDatabase
 		return true;
 	}
 	
+	@Override
+	public void beginTransaction() {
+		getDatabase(true);
+		sqlDB.beginTransaction();
+	}
+	
+	@Override
+	public void endTransaction(boolean successful) {
+		if (successful) sqlDB.setTransactionSuccessful();
+		sqlDB.endTransaction();
+	}
+	
 	@Override
 	public boolean isOpen() {
 		return sqlDB.isOpen();
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geopackage;
+
+import java.util.ArrayList;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.augtech.geoapi.geopackage.ICursor;
+import com.augtech.geoapi.geopackage.ISQLStatement;
+
+/** An implementation of {@link ISQLStatement} for the standard Android SQLite
+ * implementation.<p>
+ * Android already holds a cache of compiled statements on each connection, so queries
+ * are passed to {@link SQLiteDatabase#rawQuery(String, String[])} with the bound values
+ * as selection arguments. Inserts and updates are compiled once to a {@link SQLiteStatement}.
+ *
+ *
+ */
+public class AndroidSQLStatement implements ISQLStatement {
+	SQLiteDatabase sqlDB = null;
+	SQLiteStatement compiled = null;
+	String sql = null;
+	ArrayList<Object> bindArgs = new ArrayList<Object>();
+
+	public AndroidSQLStatement(SQLiteDatabase sqlDB, String sql) {
+		this.sqlDB = sqlDB;
+		this.sql = sql;
+	}
+
+	@Override
+	public void bindInt(int index, int value) {
+		setArg(index, Long.valueOf(value));
+	}
+
+	@Override
+	public void bindLong(int index, long value) {
+		setArg(index, Long.valueOf(value));
+	}
+
+	@Override
+	public void bindDouble(int index, double value) {
+		setArg(index, Double.valueOf(value));
+	}
+
+	@Override
+	public void bindString(int index, String value) {
+		setArg(index, value);
+	}
+
+	@Override
+	public void bindBlob(int index, byte[] value) {
+		setArg(index, value);
+	}
+
+	@Override
+	public void bindNull(int index) {
+		setArg(index, null);
+	}
+
+	@Override
+	public void clearBindings() {
+		bindArgs.clear();
+		if (compiled!=null) compiled.clearBindings();
+	}
+
+	@Override
+	public ICursor executeQuery() {
+		String[] args = new String[bindArgs.size()];
+		for (int i=0; i<args.length; i++) {
+			Object o = bindArgs.get(i);
+			if (o instanceof byte[])
+				throw new IllegalArgumentException("Blob values cannot be bound to a query");
+			args[i] = o==null ? null : String.valueOf(o);
+		}
+		return new AndroidCursor( sqlDB.rawQuery(sql, args) );
+	}
+
+	@Override
+	public long executeInsert() {
+		return bindCompiled().executeInsert();
+	}
+
+	@Override
+	public int executeUpdate() {
+		return bindCompiled().executeUpdateDelete();
+	}
+
+	@Override
+	public void close() {
+		if (compiled!=null) compiled.close();
+		compiled = null;
+		bindArgs.clear();
+	}
+	/** Compile the statement (if not already) and bind the
+	 * current values to it
+	 *
+	 * @return The compiled statement
+	 */
+	private SQLiteStatement bindCompiled() {
+		if (compiled==null) compiled = sqlDB.compileStatement(sql);
+
+		for (int i=0; i<bindArgs.size(); i++) {
+			Object o = bindArgs.get(i);
+			if (o==null) {
+				compiled.bindNull(i+1);
+			} else if (o instanceof Long) {
+				compiled.bindLong(i+1, (Long)o);
+			} else if (o instanceof Double) {
+				compiled.bindDouble(i+1, (Double)o);
+			} else if (o instanceof byte[]) {
+				compiled.bindBlob(i+1, (byte[])o);
+			} else {
+				compiled.bindString(i+1, String.valueOf(o));
+			}
+		}
+		return compiled;
+	}
+
+	private void setArg(int index, Object value) {
+		while (bindArgs.size() < index) bindArgs.add(null);
+		bindArgs.set(index-1, value);
+	}
+}
@@ -0,0 +1,317 @@
+/*
+ * Copyright 2014, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeType;
+import org.opengis.feature.type.GeometryType;
+import org.opengis.geometry.BoundingBox;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.augtech.geoapi.feature.NameImpl;
+import com.augtech.geoapi.feature.SimpleFeatureImpl;
+import com.augtech.geoapi.feature.type.AttributeTypeImpl;
+import com.augtech.geoapi.feature.type.GeometryDescriptorImpl;
+import com.augtech.geoapi.feature.type.GeometryTypeImpl;
+import com.augtech.geoapi.feature.type.SimpleFeatureTypeImpl;
+import com.augtech.geoapi.geometry.BoundingBoxImpl;
+import com.augtech.geoapi.geopackage.BulkTileWriter;
+import com.augtech.geoapi.geopackage.BulkWriter;
+import com.augtech.geoapi.geopackage.GeoPackage;
+import com.augtech.geoapi.geopackage.JSqlLiteDatabase;
+import com.augtech.geoapi.geopackage.JSqlLiteFunctions;
+import com.augtech.geoapi.geopackage.table.FeaturesTable;
+import com.augtech.geoapi.geopackage.table.TilesTable;
+import com.augtech.geoapi.referncing.CoordinateReferenceSystemImpl;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+
+/** Generates the synthetic GeoPackages used by the benchmarks.<p>
+ * Features are spread uniformly over the WGS84 extent with a fixed random seed, so
+ * that every run (and every fork) works on identical data. Generated GeoPackages are
+ * kept in the benchmark directory (<code>gpkg.bench.dir</code>, defaulting to java.io.tmpdir)
+ * and re-used, as the larger ones take a long time to build.
+ *
+ * @author Augmented Technologies Ltd 2014.
+ *
+ */
+public class BenchmarkData {
+	/** The table name used for all generated feature tables */
+	public static final String FEATURE_TABLE = "bench_features";
+	/** The table name used for all generated tile tables */
+	public static final String TILE_TABLE = "bench_tiles";
+	/** Extent that generated features are placed within */
+	public static final double MIN_X = -180, MAX_X = 180, MIN_Y = -90, MAX_Y = 90;
+	/** The number of features passed to each insertFeatures() call whilst generating */
+	static final int GENERATE_BATCH = 10000;
+	static final long SEED = 42;
+
+	/** The generated geometry types */
+	public enum GeomType {
+		POINT("Point"), LINESTRING("LineString"), POLYGON("Polygon");
+
+		final String gpkgName;
+		GeomType(String gpkgName) {
+			this.gpkgName = gpkgName;
+		}
+	}
+
+	private static final GeometryFactory geomFactory = new GeometryFactory();
+
+	/** Get the directory generated GeoPackages are stored in
+	 *
+	 * @return
+	 */
+	public static File getDataDir() {
+		File dir = new File(System.getProperty("gpkg.bench.dir", System.getProperty("java.io.tmpdir")));
+		dir.mkdirs();
+		return dir;
+	}
+	/** Open (creating first if required) a GeoPackage holding a features table with
+	 * the requested number of rows.
+	 *
+	 * @param type The geometry type for the table
+	 * @param rows The number of features
+	 * @param vertices The number of vertices per line or polygon
+	 * @param spatialIndex Should the table have an R*Tree spatial index?
+	 * @return An open GeoPackage
+	 * @throws Exception
+	 */
+	public static GeoPackage openFeatures(GeomType type, int rows, int vertices, boolean spatialIndex) throws Exception {
+		String name = String.format("gpkg-bench-%s-%s-%s%s.gpkg",
+				type.name().toLowerCase(), rows, vertices, spatialIndex ? "-idx" : "");
+		File file = new File(getDataDir(), name);
+
+		if (!file.exists()) {
+			// Build to a temporary file so an aborted run is not picked up next time
+			File tmp = new File(getDataDir(), "tmp-"+name);
+			GeoPackage gpkg = createGeoPackage(tmp);
+			FeaturesTable table = createFeaturesTable(gpkg, type);
+			SimpleFeatureType sft = createFeatureType(type);
+			Random rnd = new Random(SEED);
+
+			for (int done=0; done<rows; done+=GENERATE_BATCH) {
+				gpkg.insertFeatures( createFeatures(sft, type, Math.min(GENERATE_BATCH, rows-done), vertices, rnd) );
+			}
+			if (spatialIndex) table.createSpatialIndex();
+
+			gpkg.close();
+			if (!tmp.renameTo(file))
+				throw new Exception("Unable to rename "+tmp+" to "+file);
+		}
+
+		return openGeoPackage(file);
+	}
+	/** Open (creating first if required) a GeoPackage holding a 'slippy' tiles table with
+	 * every tile populated from zoom level 0 up to and including maxZoom.
+	 *
+	 * @param maxZoom The last zoom level to populate
+	 * @param tileBytes The approximate size of each tile image
+	 * @return An open GeoPackage
+	 * @throws Exception
+	 */
+	public static GeoPackage openTiles(int maxZoom, int tileBytes) throws Exception {
+		String name = String.format("gpkg-bench-tiles-%s-%s.gpkg", maxZoom, tileBytes);
+		File file = new File(getDataDir(), name);
+
+		if (!file.exists()) {
+			File tmp = new File(getDataDir(), "tmp-"+name);
+			GeoPackage gpkg = createGeoPackage(tmp);
+			new TilesTable(gpkg, TILE_TABLE).create(256);
+			Random rnd = new Random(SEED);
+
+			BulkTileWriter writer = gpkg.openBulkTileWriter(TILE_TABLE, BulkWriter.DEFAULT_COMMIT_EVERY, null, null);
+			try {
+				for (int z=0; z<=maxZoom; z++) {
+					int size = 1 << z;
+					for (int x=1; x<=size; x++) {
+						for (int y=1; y<=size; y++) {
+							writer.add(createTileImage(tileBytes, rnd), x, y, z);
+						}
+					}
+				}
+			} finally {
+				writer.close();
+			}
+
+			gpkg.close();
+			if (!tmp.renameTo(file))
+				throw new Exception("Unable to rename "+tmp+" to "+file);
+		}
+
+		return openGeoPackage(file);
+	}
+	/** Create a new, empty, GeoPackage (overwriting any existing file)
+	 *
+	 * @param file
+	 * @return
+	 */
+	public static GeoPackage createGeoPackage(File file) {
+		GeoPackage gpkg = new GeoPackage(new JSqlLiteDatabase(file, new JSqlLiteFunctions()), true);
+		gpkg.log.setLevel(Level.WARNING);
+		return gpkg;
+	}
+	/** Open an existing GeoPackage
+	 *
+	 * @param file
+	 * @return
+	 */
+	public static GeoPackage openGeoPackage(File file) {
+		GeoPackage gpkg = new GeoPackage(new JSqlLiteDatabase(file, new JSqlLiteFunctions()), false);
+		gpkg.log.setLevel(Level.WARNING);
+		return gpkg;
+	}
+	/** Create the benchmark features table in a GeoPackage
+	 *
+	 * @param gpkg
+	 * @param type
+	 * @return
+	 * @throws Exception
+	 */
+	public static FeaturesTable createFeaturesTable(GeoPackage gpkg, GeomType type) throws Exception {
+		return gpkg.createFeaturesTable( createFeatureType(type),
+				new BoundingBoxImpl(MIN_X, MAX_X, MIN_Y, MAX_Y, new CoordinateReferenceSystemImpl("4326")) );
+	}
+	/** Build the feature type for the benchmark table, which has a name, a
+	 * numeric value and a count, along with the geometry.
+	 *
+	 * @param type
+	 * @return
+	 */
+	public static SimpleFeatureType createFeatureType(GeomType type) {
+		CoordinateReferenceSystem crs = new CoordinateReferenceSystemImpl("4326");
+
+		ArrayList<AttributeType> attrs = new ArrayList<AttributeType>();
+		attrs.add(new AttributeTypeImpl(new NameImpl("name"), String.class) );
+		attrs.add(new AttributeTypeImpl(new NameImpl("value"), Double.class) );
+		attrs.add(new AttributeTypeImpl(new NameImpl("count"), Integer.class) );
+
+		GeometryType gType = new GeometryTypeImpl(new NameImpl(type.gpkgName), Geometry.class, crs);
+		attrs.add(gType);
+
+		return new SimpleFeatureTypeImpl(
+				new NameImpl(FEATURE_TABLE),
+				attrs,
+				new GeometryDescriptorImpl(gType, new NameImpl("the_geom"))
+				);
+	}
+	/** Create a list of random features for the benchmark table
+	 *
+	 * @param sft The feature type, as created by {@link #createFeatureType(GeomType)}
+	 * @param type The geometry type to create
+	 * @param count The number of features
+	 * @param vertices The number of vertices per line or polygon
+	 * @param rnd
+	 * @return
+	 */
+	public static List<SimpleFeature> createFeatures(SimpleFeatureType sft, GeomType type, int count,
+			int vertices, Random rnd) {
+		List<SimpleFeature> features = new ArrayList<SimpleFeature>(count);
+
+		for (int i=0; i<count; i++) {
+			List<Object> values = new ArrayList<Object>();
+			values.add( "Feature "+rnd.nextInt(1000000) );
+			values.add( rnd.nextDouble() * 1000 );
+			values.add( rnd.nextInt(1000) );
+
+			Geometry geom = createGeometry(type, vertices, rnd);
+			values.add( geom );
+
+			features.add( new SimpleFeatureImpl(null, values, sft, geom) );
+		}
+
+		return features;
+	}
+	/** Create a random geometry within the benchmark extent. Lines and
+	 * polygons are kept small (less than 0.1 degree across).
+	 *
+	 * @param type
+	 * @param vertices The number of vertices for a line or polygon
+	 * @param rnd
+	 * @return
+	 */
+	public static Geometry createGeometry(GeomType type, int vertices, Random rnd) {
+		double x = MIN_X + rnd.nextDouble() * (MAX_X - MIN_X - 0.1);
+		double y = MIN_Y + rnd.nextDouble() * (MAX_Y - MIN_Y - 0.1);
+
+		switch (type) {
+		case POINT:
+			return geomFactory.createPoint( new Coordinate(x, y) );
+
+		case LINESTRING:
+			Coordinate[] line = new Coordinate[Math.max(2, vertices)];
+			for (int i=0; i<line.length; i++) {
+				line[i] = new Coordinate(x + rnd.nextDouble() * 0.1, y + rnd.nextDouble() * 0.1);
+			}
+			return geomFactory.createLineString( line );
+
+		default:
+			// A closed ring around a centre point
+			Coordinate[] ring = new Coordinate[Math.max(4, vertices)];
+			double cx = x + 0.05, cy = y + 0.05;
+			for (int i=0; i<ring.length-1; i++) {
+				double angle = 2 * Math.PI * i / (ring.length-1);
+				double r = 0.025 + rnd.nextDouble() * 0.025;
+				ring[i] = new Coordinate(cx + Math.cos(angle) * r, cy + Math.sin(angle) * r);
+			}
+			ring[ring.length-1] = new Coordinate(ring[0]);
+			return geomFactory.createPolygon( geomFactory.createLinearRing(ring), null );
+		}
+	}
+	/** Create a query box covering (on average) the requested number of features
+	 * for a table of the given size, at a random location within the extent.
+	 *
+	 * @param rows The number of features in the table
+	 * @param hits The approximate number of features the box should cover
+	 * @param rnd
+	 * @return
+	 */
+	public static BoundingBox createQueryBox(int rows, int hits, Random rnd) {
+		double fraction = Math.min(1d, hits / (double)rows);
+		double w = (MAX_X - MIN_X) * Math.sqrt(fraction);
+		double h = (MAX_Y - MIN_Y) * Math.sqrt(fraction);
+		double x = MIN_X + rnd.nextDouble() * (MAX_X - MIN_X - w);
+		double y = MIN_Y + rnd.nextDouble() * (MAX_Y - MIN_Y - h);
+
+		return new BoundingBoxImpl(x, x + w, y, y + h, new CoordinateReferenceSystemImpl("4326"));
+	}
+	/** Create a dummy PNG tile. Only the signature is valid, the rest of the
+	 * data is random to prevent any compression by the database.
+	 *
+	 * @param size The total size of the image data
+	 * @param rnd
+	 * @return
+	 */
+	public static byte[] createTileImage(int size, Random rnd) {
+		ByteArrayOutputStream out = new ByteArrayOutputStream(size);
+		out.write(new byte[] {(byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'}, 0, 8);
+
+		byte[] body = new byte[Math.max(0, size-8)];
+		rnd.nextBytes(body);
+		out.write(body, 0, body.length);
+
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage.benchmark;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.geometry.BoundingBox;
+
+import com.augtech.geoapi.geopackage.FeatureReader;
+import com.augtech.geoapi.geopackage.GeoPackage;
+import com.augtech.geoapi.geopackage.benchmark.BenchmarkData.GeomType;
+import com.augtech.geoapi.geopackage.geometry.StandardGeometryDecoder;
+
+/** Measures reading features back out of a GeoPackage by where clause and by
+ * bounding box, and by where clause reading a single attribute.<p>
+ * Each invocation selects (approximately) <code>hits</code> features from a table of
+ * <code>rows</code> features, at a different random location each time, so the cost
+ * of the query can be compared as the table grows. The 10 million row tables take some
+ * time to generate the first time they are used, so are not run by default; Use
+ * <code>-p rows=10000000</code> to include them.
+ *
+ * @author Augmented Technologies Ltd 2014.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FeatureReadBenchmark {
+
+	@Param({"POINT", "LINESTRING", "POLYGON"})
+	public GeomType geomType;
+
+	@Param({"10000", "100000", "1000000"})
+	public int rows;
+
+	/** The approximate number of features returned by each query */
+	@Param({"1000"})
+	public int hits;
+
+	/** Should the table have an R*Tree spatial index? */
+	@Param({"true", "false"})
+	public boolean spatialIndex;
+
+	/** The number of vertices per line or polygon */
+	@Param({"20"})
+	public int vertices;
+
+	private GeoPackage gpkg;
+	private Random rnd;
+
+	@Setup(Level.Trial)
+	public void open() throws Exception {
+		gpkg = BenchmarkData.openFeatures(geomType, rows, vertices, spatialIndex);
+		rnd = new Random(BenchmarkData.SEED);
+	}
+
+	@TearDown(Level.Trial)
+	public void close() {
+		gpkg.close();
+	}
+
+	@Benchmark
+	public List<SimpleFeature> getFeaturesByWhere() throws Exception {
+		int start = rnd.nextInt( Math.max(1, rows-hits) );
+		String where = String.format("id>%s AND id<=%s", start, start + hits);
+
+		return gpkg.getFeatures(BenchmarkData.FEATURE_TABLE, where, new StandardGeometryDecoder());
+	}
+
+	/** As {@link #getFeaturesByWhere()}, but only reading the 'value' column */
+	@Benchmark
+	public List<SimpleFeature> getFeaturesByWhereProjected() throws Exception {
+		int start = rnd.nextInt( Math.max(1, rows-hits) );
+		String where = String.format("id>%s AND id<=%s", start, start + hits);
+
+		return gpkg.getFeatures(BenchmarkData.FEATURE_TABLE, where, new String[]{"value"}, 
+				new StandardGeometryDecoder());
+	}
+
+	/** As {@link #getFeaturesByWhere()}, but leaving each geometry undecoded */
+	@Benchmark
+	public List<SimpleFeature> getFeaturesByWhereLazy() throws Exception {
+		int start = rnd.nextInt( Math.max(1, rows-hits) );
+		String where = String.format("id>%s AND id<=%s", start, start + hits);
+
+		return gpkg.getFeatures(BenchmarkData.FEATURE_TABLE, where, null, FeatureReader.GEOMETRY_LAZY, 
+				new StandardGeometryDecoder());
+	}
+
+	@Benchmark
+	public List<SimpleFeature> getFeaturesByAttribute() throws Exception {
+		// 'value' is uniform over 0-1000
+		double start = rnd.nextDouble() * 1000 * (1 - hits / (double)rows);
+		String where = String.format("value>=%s AND value<%s", start, start + hits * 1000d / rows);
+
+		return gpkg.getFeatures(BenchmarkData.FEATURE_TABLE, where, new StandardGeometryDecoder());
+	}
+
+	@Benchmark
+	public List<SimpleFeature> getFeaturesByBBox() throws Exception {
+		BoundingBox bbox = BenchmarkData.createQueryBox(rows, hits, rnd);
+
+		return gpkg.getFeatures(BenchmarkData.FEATURE_TABLE, bbox, true, false, new StandardGeometryDecoder());
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage.benchmark;
+
+import java.io.File;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opengis.feature.simple.SimpleFeature;
+
+import com.augtech.geoapi.geopackage.GeoPackage;
+import com.augtech.geoapi.geopackage.benchmark.BenchmarkData.GeomType;
+
+/** Measures {@link GeoPackage#insertFeatures(java.util.Collection, int)} for a batch of
+ * features. Each measurement iteration starts from a new, empty, GeoPackage so the
+ * table size does not grow across iterations.
+ *
+ * @author Augmented Technologies Ltd 2014.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FeatureWriteBenchmark {
+
+	@Param({"POINT", "LINESTRING", "POLYGON"})
+	public GeomType geomType;
+
+	/** The number of features passed to each insertFeatures() call */
+	@Param({"1000", "10000"})
+	public int batchSize;
+
+	/** The number of vertices per line or polygon */
+	@Param({"20"})
+	public int vertices;
+
+	/** The number of threads to encode features on */
+	@Param({"1", "4"})
+	public int encodeThreads;
+
+	private File file;
+	private GeoPackage gpkg;
+	private List<SimpleFeature> features;
+
+	@Setup(Level.Trial)
+	public void createFeatures() {
+		features = BenchmarkData.createFeatures(BenchmarkData.createFeatureType(geomType),
+				geomType, batchSize, vertices, new Random(BenchmarkData.SEED));
+	}
+
+	@Setup(Level.Iteration)
+	public void createGeoPackage() throws Exception {
+		file = new File(BenchmarkData.getDataDir(), "gpkg-bench-write.gpkg");
+		gpkg = BenchmarkData.createGeoPackage(file);
+		BenchmarkData.createFeaturesTable(gpkg, geomType);
+	}
+
+	@TearDown(Level.Iteration)
+	public void close() {
+		gpkg.close();
+		file.delete();
+	}
+
+	@Benchmark
+	public int insertFeatures() throws Exception {
+		return gpkg.insertFeatures(features, encodeThreads);
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage.benchmark;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.augtech.geoapi.geopackage.GeoPackage;
+import com.augtech.geoapi.geopackage.benchmark.BenchmarkData.GeomType;
+import com.augtech.geoapi.geopackage.geometry.GeometryDecoder;
+import com.augtech.geoapi.geopackage.geometry.StandardGeometryDecoder;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+
+/** Measures encoding a JTS Geometry to a GeoPackage geometry BLOB and decoding
+ * it back, both in full and the header (envelope) only.<p>
+ * Each invocation works on the next of a fixed set of pre-generated geometries.
+ *
+ * @author Augmented Technologies Ltd 2014.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GeometryCodecBenchmark {
+	static final int NUM_GEOMETRIES = 1024;
+
+	@Param({"POINT", "LINESTRING", "POLYGON"})
+	public GeomType geomType;
+
+	/** The number of vertices per line or polygon */
+	@Param({"20", "500"})
+	public int vertices;
+
+	private File file;
+	private GeoPackage gpkg;
+	private Geometry[] geometries = new Geometry[NUM_GEOMETRIES];
+	private byte[][] encoded = new byte[NUM_GEOMETRIES][];
+	private GeometryDecoder decoder = new StandardGeometryDecoder();
+	private int next = 0;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		// encodeGeometry() is an instance method, so needs a GeoPackage
+		file = new File(BenchmarkData.getDataDir(), "gpkg-bench-codec.gpkg");
+		gpkg = BenchmarkData.createGeoPackage(file);
+
+		Random rnd = new Random(BenchmarkData.SEED);
+		for (int i=0; i<NUM_GEOMETRIES; i++) {
+			geometries[i] = BenchmarkData.createGeometry(geomType, vertices, rnd);
+			encoded[i] = gpkg.encodeGeometry(geometries[i], 2);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void close() {
+		gpkg.close();
+		file.delete();
+	}
+
+	@Benchmark
+	public byte[] encodeGeometry() throws Exception {
+		next = (next + 1) % NUM_GEOMETRIES;
+		return gpkg.encodeGeometry(geometries[next], 2);
+	}
+
+	@Benchmark
+	public Envelope decodeHeader() throws Exception {
+		next = (next + 1) % NUM_GEOMETRIES;
+		return decoder.setGeometryData(encoded[next]).getEnvelope();
+	}
+
+	@Benchmark
+	public Geometry decodeGeometry() throws Exception {
+		next = (next + 1) % NUM_GEOMETRIES;
+		return decoder.setGeometryData(encoded[next]).getGeometry();
+	}
+
+	@Benchmark
+	public double[] readEnvelope() throws Exception {
+		next = (next + 1) % NUM_GEOMETRIES;
+		return GeometryDecoder.readEnvelope(encoded[next]);
+	}
+}
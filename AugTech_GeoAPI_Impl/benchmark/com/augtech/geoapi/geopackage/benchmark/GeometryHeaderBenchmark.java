@@ -0,0 +1,134 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.augtech.geoapi.geopackage.geometry.GeometryDecoder;
+import com.augtech.geoapi.geopackage.geometry.OGCWKBWriter;
+import com.augtech.geoapi.geopackage.geometry.StandardGeometryDecoder;
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.io.ByteOrderValues;
+
+/** Measures decoding the GeoPackage geometry header on a mix of XY, XYZ, XYM and XYZM
+ * envelopes, headers without an envelope and empty geometries, in both byte orders.<p>
+ * {@link GeometryCodecBenchmark} only decodes headers as written by this library (which
+ * always have an XY envelope), whereas GeoPackages from other sources use all of these.
+ *
+ * @author Augmented Technologies Ltd.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GeometryHeaderBenchmark {
+	static final int NUM_GEOMETRIES = 1024;
+
+	private byte[][] encoded = new byte[NUM_GEOMETRIES][];
+	private GeometryDecoder decoder = new StandardGeometryDecoder();
+	private int next = 0;
+
+	@Setup(Level.Trial)
+	public void setup() throws Exception {
+		Random rnd = new Random(BenchmarkData.SEED);
+		GeometryFactory gf = new GeometryFactory();
+
+		for (int i=0; i<NUM_GEOMETRIES; i++) {
+			double x = rnd.nextDouble() * 360 - 180;
+			double y = rnd.nextDouble() * 180 - 90;
+			Geometry geom = gf.createLineString(new Coordinate[] {
+					new Coordinate(x, y, 1), new Coordinate(x + rnd.nextDouble(), y + rnd.nextDouble(), 2)} );
+
+			int envIndicator = rnd.nextInt(6);// 5 == empty
+			int byteOrder = rnd.nextBoolean() ? ByteOrderValues.LITTLE_ENDIAN : ByteOrderValues.BIG_ENDIAN;
+			encoded[i] = createBlob(geom, envIndicator, byteOrder);
+		}
+	}
+
+	@Benchmark
+	public Envelope decodeHeader() throws Exception {
+		next = (next + 1) % NUM_GEOMETRIES;
+		return decoder.setGeometryData(encoded[next]).getEnvelope();
+	}
+
+	@Benchmark
+	public double[] readEnvelope() throws Exception {
+		next = (next + 1) % NUM_GEOMETRIES;
+		return GeometryDecoder.readEnvelope(encoded[next]);
+	}
+
+	/** Build a GeoPackage geometry BLOB with the requested header envelope type
+	 *
+	 * @param geom The geometry to write
+	 * @param envIndicator 0 for no envelope, 1 XY, 2 XYZ, 3 XYM, 4 XYZM or 5 for an empty geometry
+	 * @param byteOrder The JTS byte order for the header and WKB
+	 * @return The BLOB
+	 * @throws IOException
+	 */
+	static byte[] createBlob(Geometry geom, int envIndicator, int byteOrder) throws IOException {
+		boolean empty = envIndicator==5;
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write('G');
+		out.write('P');
+		out.write(0);
+		int flags = byteOrder==ByteOrderValues.LITTLE_ENDIAN ? 1 : 0;
+		if (empty) {
+			flags |= 1 << 4;
+		} else {
+			flags |= envIndicator << 1;
+		}
+		out.write(flags);
+
+		byte[] buf = new byte[8];
+		ByteOrderValues.putInt(4326, buf, byteOrder);
+		out.write(buf, 0, 4);
+
+		if (!empty && envIndicator>0) {
+			Envelope env = geom.getEnvelopeInternal();
+			int numVals = envIndicator==1 ? 4 : envIndicator==4 ? 8 : 6;
+			double[] vals = new double[] {env.getMinX(), env.getMaxX(), env.getMinY(), env.getMaxY(), 1, 2, 0, 0};
+			for (int v=0; v<numVals; v++) {
+				ByteOrderValues.putDouble(vals[v], buf, byteOrder);
+				out.write(buf);
+			}
+		}
+
+		out.write( new OGCWKBWriter(2, false, byteOrder).write(geom) );
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.augtech.geoapi.geopackage.GeoPackage;
+import com.augtech.geoapi.geopackage.GpkgTable;
+import com.augtech.geoapi.geopackage.table.TilesTable;
+
+/** Measures {@link GeoPackage#getTile(String, int, int, int)} and {@link TilesTable#readTile(int, int, int)} on a fully populated
+ * tile pyramid, reading random tiles from the deepest zoom level, with and without
+ * the tile cache.
+ *
+ * @author Augmented Technologies Ltd 2014.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class TileReadBenchmark {
+
+	/** The deepest zoom level in the pyramid. Zoom 8 holds 87,381 tiles in total */
+	@Param({"4", "8"})
+	public int maxZoom;
+
+	@Param({"16384"})
+	public int tileBytes;
+
+	/** The size of the tile cache. 0 reads every tile from the database */
+	@Param({"0", "16777216"})
+	public long cacheBytes;
+
+	private GeoPackage gpkg;
+	private TilesTable table;
+	private Random rnd;
+
+	@Setup(Level.Trial)
+	public void open() throws Exception {
+		gpkg = BenchmarkData.openTiles(maxZoom, tileBytes);
+		gpkg.getTileCache().setMaxBytes(cacheBytes);
+		table = (TilesTable) gpkg.getUserTable(BenchmarkData.TILE_TABLE, GpkgTable.TABLE_TYPE_TILES);
+		rnd = new Random(BenchmarkData.SEED);
+	}
+
+	@TearDown(Level.Trial)
+	public void close() {
+		gpkg.close();
+	}
+
+	@Benchmark
+	public byte[] getTile() throws Exception {
+		int size = 1 << maxZoom;
+		return gpkg.getTile(BenchmarkData.TILE_TABLE, 1 + rnd.nextInt(size), 1 + rnd.nextInt(size), maxZoom);
+	}
+
+	/** Reads directly from the table, by-passing the tile cache */
+	@Benchmark
+	public byte[] readTile() throws Exception {
+		int size = 1 << maxZoom;
+		return table.readTile(maxZoom, 1 + rnd.nextInt(size), 1 + rnd.nextInt(size));
+	}
+}
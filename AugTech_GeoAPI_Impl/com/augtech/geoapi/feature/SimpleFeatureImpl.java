@@ -90,7 +90,7 @@ public class SimpleFeatureImpl implements SimpleFeature {
 	 * 
 	 * @return An implementation of {@link BoundingBox}
 	 */
-	public final BoundingBox getBounds() {
+	public BoundingBox getBounds() {
 		if (bounds!=null) return bounds;
 		
 		Name geomName = featureType.getGeometryDescriptor().getName();
@@ -210,7 +210,7 @@ public class SimpleFeatureImpl implements SimpleFeature {
 	 * @see {@link GeometryFactory} to build the geometry
 	 */
 	@Override
-	public final void setDefaultGeometry(Object geom) {
+	public void setDefaultGeometry(Object geom) {
 		defaultGeom = (Geometry)geom;
 		// 26/03/15 - Switch to static geom attribute
 //		int idx = featureType.indexOf( featureType.getGeometryDescriptor().getName() );
@@ -230,7 +230,7 @@ public class SimpleFeatureImpl implements SimpleFeature {
 //		}
 	}
 	@Override
-	public final Geometry getDefaultGeometry() {
+	public Geometry getDefaultGeometry() {
 		// 26/03/15 - Switch to static geom attribute
 		return defaultGeom;
 		
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage;
+
+import org.opengis.feature.simple.SimpleFeature;
+
+import com.augtech.geoapi.geopackage.table.TilesTable;
+import com.augtech.geoapi.geopackage.table.TilesTable.TileMatrixInfo;
+
+/** Loads a large number of tiles into a single tiles table, as opened by
+ * {@link GeoPackage#openBulkTileWriter(String, int, String, String)}.<p>
+ * The table's cached {@link TileMatrixInfo} is used to validate each tile reference
+ * in memory rather than by querying gpkg_tile_matrix. The tiles are written through a
+ * {@link BulkWriter}, so are committed in batches and the last_change for the table
+ * is only updated once the writer is closed. Each tile added is removed from
+ * the GeoPackage's {@link TileCache}.<p>
+ * A writer is not thread safe and nothing else should be written to the GeoPackage whilst it is open.
+ *
+ * @author Augmented Technologies Ltd.
+ *
+ */
+public class BulkTileWriter {
+	private TileCache tileCache;
+	private TilesTable table;
+	private BulkWriter writer;
+	private TileMatrixInfo matrix;
+	/* Position of each value in a row */
+	private int zoomIdx = -1;
+	private int columnIdx = -1;
+	private int rowIdx = -1;
+	private int dataIdx = -1;
+	private Object[] row;
+
+	/** Create a new BulkTileWriter. Use {@link GeoPackage#openBulkTileWriter(String, int, String, String)}
+	 *
+	 * @param geoPackage The GeoPackage to write to
+	 * @param table The tiles table to write to
+	 * @param commitEvery The number of tiles to write in each transaction
+	 * @param journalMode A value for PRAGMA journal_mode, or <code>Null</code> to leave unchanged
+	 * @param synchronous A value for PRAGMA synchronous, or <code>Null</code> to leave unchanged
+	 * @throws Exception If the tile matrix for the table cannot be read
+	 */
+	BulkTileWriter(GeoPackage geoPackage, TilesTable table, int commitEvery, String journalMode,
+			String synchronous) throws Exception {
+
+		this.table = table;
+		this.tileCache = geoPackage.getTileCache();
+
+		matrix = table.getTileMatrixInfo();
+
+		writer = new BulkWriter(geoPackage, table, commitEvery, journalMode, synchronous);
+
+		String[] columns = writer.getColumns();
+		for (int i=0; i<columns.length; i++) {
+			if (columns[i].equals("zoom_level")) {
+				zoomIdx = i;
+			} else if (columns[i].equals("tile_column")) {
+				columnIdx = i;
+			} else if (columns[i].equals("tile_row")) {
+				rowIdx = i;
+			} else if (columns[i].equals("tile_data")) {
+				dataIdx = i;
+			}
+		}
+		if (zoomIdx==-1 || columnIdx==-1 || rowIdx==-1 || dataIdx==-1) {
+			writer.abort();
+			throw new Exception(table.getTableName()+" is not a valid tiles table");
+		}
+		row = new Object[columns.length];
+	}
+	/** Add a single raster tile to the table.
+	 *
+	 * @param tile The tile image data (PNG or JPEG)
+	 * @param tileColumn The column ID (x)
+	 * @param tileRow The row ID (y)
+	 * @param zoom The zoom level for the tile
+	 * @throws Exception If the tile image is not PNG or JPEG, the tile reference is
+	 * outside the tile matrix, or the tile could not be inserted.
+	 */
+	public void add(byte[] tile, int tileColumn, int tileRow, int zoom) throws Exception {
+		if (!isImageTypeValid(tile)) {
+			throw new Exception("Tile image is neither PNG or JPG");
+		}
+
+		if (!isTileInMatrix(tileColumn, tileRow, zoom)) {
+			throw new Exception("Supplied tile reference is outside the scope of the tile matrix for "
+					+table.getTableName());
+		}
+
+		row[zoomIdx] = zoom;
+		row[columnIdx] = tileColumn;
+		row[rowIdx] = tileRow;
+		row[dataIdx] = tile;
+
+		writer.add(row);
+		tileCache.invalidate(table.getTableName(), zoom, tileColumn, tileRow);
+	}
+	/** Add a tile from a SimpleFeature, with the tile reference taken from the feature
+	 * ID as described in {@link GeoPackage#insertTile(SimpleFeature)}.
+	 *
+	 * @param feature
+	 * @throws Exception If the image data or tile reference cannot be decoded, or the
+	 * tile could not be inserted.
+	 */
+	public void add(SimpleFeature feature) throws Exception {
+		int[] zxy = getTileReference(feature);
+		add(getTileData(feature), zxy[1], zxy[2], zxy[0]);
+	}
+	/** Check whether a tile reference is within the tile matrix for the table
+	 *
+	 * @param tileColumn The column ID (x)
+	 * @param tileRow The row ID (y)
+	 * @param zoom The zoom level
+	 * @return True if valid
+	 */
+	public boolean isTileInMatrix(int tileColumn, int tileRow, int zoom) {
+		return matrix.isTileInMatrix(tileColumn, tileRow, zoom);
+	}
+	/** Get the height of the tile matrix at a zoom level
+	 *
+	 * @param zoom The zoom level
+	 * @return The number of rows, or -1 if the zoom level is not defined
+	 */
+	public int getMatrixHeight(int zoom) {
+		return matrix.getMatrixHeight(zoom);
+	}
+	/** Commit all tiles added since the last commit and start a new transaction
+	 *
+	 */
+	public void commit() {
+		writer.commit();
+	}
+	/** Get the total number of tiles added by this writer, whether
+	 * committed or not.
+	 *
+	 * @return
+	 */
+	public long getNumInserted() {
+		return writer.getNumInserted();
+	}
+	/** Get the table being written to
+	 *
+	 * @return
+	 */
+	public TilesTable getTable() {
+		return table;
+	}
+	/** Commit any outstanding tiles, update the last_change for the table
+	 * and release the writer.
+	 *
+	 */
+	public void close() {
+		writer.close();
+	}
+	/** Release the writer without committing any tiles added since the last
+	 * commit. Tiles committed previously remain in the table.
+	 *
+	 */
+	public void abort() {
+		writer.abort();
+	}
+	/** Check the tile image is either a PNG or JPEG from the first bytes of the data,
+	 * these being the only permissible types.
+	 *
+	 * @param tile The tile image data
+	 * @return True if PNG or JPEG
+	 */
+	static boolean isImageTypeValid(byte[] tile) {
+		if (tile==null || tile.length<4) return false;
+
+		// PNG (0x89 'PNG') or JPEG (SOI marker 0xFFD8)
+		if ((tile[1]=='P' || tile[1]=='p') && (tile[2]=='N' || tile[2]=='n') && (tile[3]=='G' || tile[3]=='g'))
+			return true;
+
+		return (tile[0] & 0xFF)==0xFF && (tile[1] & 0xFF)==0xD8;
+	}
+	/** Get the image data from a tile feature. The first instance of a byte[] on the
+	 * feature's attributes is taken as the image.
+	 *
+	 * @param feature
+	 * @return The image data
+	 * @throws Exception If no image data is found
+	 */
+	static byte[] getTileData(SimpleFeature feature) throws Exception {
+		// Cycle feature attrs to get the image data (assumes first byte[] is image)
+		for (int i=0; i<feature.getAttributeCount(); i++) {
+			if (feature.getAttribute(i) instanceof byte[]) {
+				return (byte[]) feature.getAttribute(i);
+			}
+		}
+		throw new Exception("Could not find image data");
+	}
+	/** Decode the tile reference from a tile feature's ID in the form of zoom/xRef/yRef
+	 * with or without leading information and an optional file extension.
+	 *
+	 * @param feature
+	 * @return int[] as zoom, x (column) and y (row)
+	 * @throws Exception If the reference cannot be decoded
+	 */
+	static int[] getTileReference(SimpleFeature feature) throws Exception {
+		//id=49/1/12/2023/1347.PNG.tile
+		String[] idParts = feature.getID().split("/");
+		if (idParts.length<3) {
+			throw new Exception("Could not decode tile reference from ID");
+		}
+		try {
+			int z = Integer.valueOf(idParts[idParts.length-3]);
+			int x = Integer.valueOf(idParts[idParts.length-2]);
+			String sY = idParts[idParts.length-1];
+			int y = Integer.valueOf(sY.indexOf(".")==-1 ? sY : sY.substring(0, sY.indexOf(".")));
+			return new int[]{z, x, y};
+		} catch (Exception e) {
+			throw new Exception("Could not decode tile reference from ID");
+		}
+	}
+}
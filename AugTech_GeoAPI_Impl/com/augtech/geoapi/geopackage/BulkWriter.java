@@ -0,0 +1,323 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import org.opengis.feature.simple.SimpleFeature;
+
+import com.augtech.geoapi.geopackage.table.FeaturesTable;
+
+/** Loads a large number of records into a single user table, as opened by
+ * {@link GeoPackage#openBulkWriter(String, int, String, String)}.<p>
+ * The INSERT statement is prepared once and a transaction held open for the life of
+ * the writer, being committed every <code>commitEvery</code> records. Values are bound to the
+ * statement by column position (see {@link #getColumns()}) using the setter for their type.<p>
+ * The writer must be closed once all records have been added to commit the final records,
+ * restore any changed PRAGMA's and update the last_change for the table. A writer is not
+ * thread safe and nothing else should be written to the GeoPackage whilst it is open.
+ *
+ * @author Augmented Technologies Ltd.
+ *
+ */
+public class BulkWriter {
+	/** The default number of records to commit in each transaction */
+	public static final int DEFAULT_COMMIT_EVERY = 10000;
+
+	private GeoPackage geoPackage;
+	private ISQLDatabase db;
+	private GpkgTable table;
+	private String[] columns;
+	private Map<String, Integer> columnIndex = new HashMap<String, Integer>();
+	private ISQLStatement insert = null;
+	private int commitEvery;
+	private int uncommitted = 0;
+	private long numInserted = 0;
+	/* Only set for features tables */
+	private FeatureRowLayout layout = null;
+	/* Re-used for each feature added */
+	private Object[] row = null;
+	/* PRAGMA's to restore on close */
+	private String oldJournalMode = null;
+	private String oldSynchronous = null;
+	private boolean inTransaction = false;
+
+	/** Create a new BulkWriter. Use {@link GeoPackage#openBulkWriter(String, int, String, String)}
+	 *
+	 * @param geoPackage The GeoPackage to write to
+	 * @param table The table to write to
+	 * @param commitEvery The number of records to write in each transaction
+	 * @param journalMode A value for PRAGMA journal_mode, or <code>Null</code> to leave unchanged
+	 * @param synchronous A value for PRAGMA synchronous, or <code>Null</code> to leave unchanged
+	 * @throws Exception
+	 */
+	BulkWriter(GeoPackage geoPackage, GpkgTable table, int commitEvery, String journalMode,
+			String synchronous) throws Exception {
+
+		if (commitEvery < 1)
+			throw new IllegalArgumentException("commitEvery must be greater than 0");
+
+		this.geoPackage = geoPackage;
+		this.db = geoPackage.getDatabase();
+		this.table = table;
+		this.commitEvery = commitEvery;
+
+		// The columns to insert, excluding the (auto-increment) primary key
+		if (table instanceof FeaturesTable) {
+			layout = geoPackage.getRowLayout( (FeaturesTable)table );
+			columns = layout.getColumns();
+		} else {
+			table.getContents(geoPackage);
+			List<String> cols = new ArrayList<String>();
+			for (GpkgField f : table.getFields()) {
+				if (!f.isPrimaryKey()) cols.add(f.getFieldName());
+			}
+			columns = cols.toArray(new String[cols.size()]);
+		}
+		for (int i=0; i<columns.length; i++) {
+			columnIndex.put(columns[i], i);
+		}
+
+		// PRAGMA's can't be changed inside a transaction
+		try {
+			if (journalMode!=null) {
+				oldJournalMode = getPragma("journal_mode");
+				setPragma("journal_mode", journalMode);
+			}
+			if (synchronous!=null) {
+				oldSynchronous = getPragma("synchronous");
+				setPragma("synchronous", synchronous);
+			}
+
+			if (layout!=null) {
+				insert = db.prepare(layout.getInsertSQL());
+				row = new Object[columns.length];
+			} else {
+				StringBuffer sql = new StringBuffer();
+				StringBuffer vals = new StringBuffer();
+				sql.append("INSERT INTO [").append(table.getTableName()).append("] (");
+				for (String c : columns) {
+					sql.append("[").append(c).append("],");
+					vals.append("?,");
+				}
+				sql.deleteCharAt(sql.length()-1);
+				vals.deleteCharAt(vals.length()-1);
+				sql.append(") VALUES (").append(vals).append(")");
+
+				insert = db.prepare(sql.toString());
+			}
+
+			db.beginTransaction();
+			inTransaction = true;
+		} catch (Exception e) {
+			// Don't leave the database with the bulk PRAGMA's set
+			if (insert!=null) insert.close();
+			insert = null;
+			restorePragmas();
+			throw e;
+		}
+	}
+	/** Get the names of the columns, in the order values should be passed
+	 * to {@link #add(Object[])}
+	 *
+	 * @return
+	 */
+	public String[] getColumns() {
+		return columns;
+	}
+	/** Add a record to the table.
+	 *
+	 * @param values The value for each column in the same order as {@link #getColumns()}.
+	 * Geometries must already be encoded (see {@link GeoPackage#encodeGeometry(com.vividsolutions.jts.geom.Geometry, int)})
+	 * @throws Exception If the record could not be inserted
+	 */
+	public void add(Object[] values) throws Exception {
+		if (insert==null) throw new IllegalStateException("BulkWriter is closed");
+
+		if (values.length!=columns.length)
+			throw new IllegalArgumentException("Expected "+columns.length+" values but got "+values.length);
+
+		if (layout!=null) {
+			layout.bind(insert, values);
+		} else {
+			for (int i=0; i<values.length; i++) {
+				bindValue(insert, i+1, values[i]);
+			}
+		}
+
+		if (insert.executeUpdate()<1)
+			throw new Exception("Failed to insert record into "+table.getTableName());
+
+		numInserted++;
+		if (++uncommitted >= commitEvery) commit();
+	}
+	/** Add a record to the table from a Map of column names to values. Any columns
+	 * not in the Map are set to Null.
+	 *
+	 * @param values
+	 * @throws Exception If the record could not be inserted
+	 */
+	public void add(Map<String, Object> values) throws Exception {
+		Object[] row = new Object[columns.length];
+		for (Map.Entry<String, Object> e : values.entrySet()) {
+			Integer idx = columnIndex.get(e.getKey());
+			if (idx==null)
+				throw new IllegalArgumentException("Column "+e.getKey()+" does not exist in "+table.getTableName());
+			row[idx] = e.getValue();
+		}
+		add(row);
+	}
+	/** Add a SimpleFeature to a features table, using the table's {@link FeatureRowLayout}.
+	 *
+	 * @param feature
+	 * @throws Exception If the record could not be inserted, or this is not a features table
+	 */
+	public void add(SimpleFeature feature) throws Exception {
+		if (layout==null)
+			throw new IllegalArgumentException(table.getTableName()+" is not a features table");
+
+		add( layout.fillRow(feature, row) );
+	}
+	/** Add a collection of SimpleFeature's to a features table, encoding them on
+	 * a number of worker threads whilst the rows are written on this thread.
+	 *
+	 * @param features The features to add
+	 * @param encodeThreads The number of threads to encode the features on. If less than 2
+	 * the features are encoded on this thread.
+	 * @throws Exception If a feature could not be encoded or inserted, or this is not a features table
+	 * @see ParallelFeatureEncoder
+	 */
+	public void addAll(Collection<SimpleFeature> features, int encodeThreads) throws Exception {
+		if (layout==null)
+			throw new IllegalArgumentException(table.getTableName()+" is not a features table");
+
+		if (encodeThreads < 2) {
+			for (SimpleFeature sf : features) {
+				add( sf );
+			}
+		} else {
+			new ParallelFeatureEncoder(layout, encodeThreads).encodeAll(features.iterator(), this);
+		}
+	}
+	/** Commit all records added since the last commit and start a new transaction
+	 *
+	 */
+	public void commit() {
+		if (!inTransaction) return;
+
+		db.endTransaction(true);
+		geoPackage.getCatalog().adjustCount(table.getTableName(), uncommitted);
+		uncommitted = 0;
+		db.beginTransaction();
+	}
+	/** Get the total number of records added by this writer, whether
+	 * committed or not.
+	 *
+	 * @return
+	 */
+	public long getNumInserted() {
+		return numInserted;
+	}
+	/** Commit any outstanding records and release the writer.
+	 *
+	 */
+	public void close() {
+		close(true);
+	}
+	/** Release the writer without committing any records added since the last
+	 * commit. Records committed previously remain in the table.
+	 *
+	 */
+	public void abort() {
+		close(false);
+	}
+
+	private void close(boolean commit) {
+		if (insert==null) return;
+
+		insert.close();
+		insert = null;
+
+		if (inTransaction) {
+			db.endTransaction(commit);
+			if (commit) geoPackage.getCatalog().adjustCount(table.getTableName(), uncommitted);
+		}
+		inTransaction = false;
+		uncommitted = 0;
+
+		restorePragmas();
+
+		if (numInserted>0)
+			geoPackage.updateLastChange(table.getTableName(), table.getTableType());
+
+		geoPackage.log.log(Level.INFO, "Bulk inserted "+numInserted+" records into "+table.getTableName());
+	}
+	/** Bind a single value to a statement with the setter for its type.
+	 *
+	 * @param stmt The statement
+	 * @param index The 1-based parameter index
+	 * @param value The value. Dates are bound as ISO 8601 date-time Strings and
+	 * any other types than numbers, Strings, Booleans and byte[] are bound as NULL.
+	 */
+	static void bindValue(ISQLStatement stmt, int index, Object value) {
+		if (value==null) {
+			stmt.bindNull(index);
+		} else if (value instanceof String) {
+			stmt.bindString(index, (String) value);
+		} else if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+			stmt.bindInt(index, ((Number) value).intValue());
+		} else if (value instanceof Long) {
+			stmt.bindLong(index, (Long) value);
+		} else if (value instanceof Double || value instanceof Float) {
+			stmt.bindDouble(index, ((Number) value).doubleValue());
+		} else if (value instanceof byte[]) {
+			stmt.bindBlob(index, (byte[]) value);
+		} else if (value instanceof Boolean) {
+			stmt.bindInt(index, (Boolean) value ? 1 : 0);
+		} else if (value instanceof Date) {
+			stmt.bindString(index, DateUtil.serializeDateTime(((Date) value).getTime(), true) );
+		} else {
+			stmt.bindNull(index);
+		}
+	}
+
+	private void restorePragmas() {
+		if (oldJournalMode!=null) setPragma("journal_mode", oldJournalMode);
+		if (oldSynchronous!=null) setPragma("synchronous", oldSynchronous);
+		oldJournalMode = null;
+		oldSynchronous = null;
+	}
+
+	private String getPragma(String name) {
+		ICursor c = db.doRawQuery("PRAGMA "+name);
+		String value = c.moveToNext() ? c.getString(0) : null;
+		c.close();
+		return value;
+	}
+
+	private void setPragma(String name, String value) {
+		// Run as a query as journal_mode returns the new mode
+		ICursor c = db.doRawQuery("PRAGMA "+name+"="+value);
+		c.moveToNext();
+		c.close();
+	}
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.feature.type.AttributeType;
+
+import com.augtech.geoapi.feature.SimpleFeatureImpl;
+import com.augtech.geoapi.geopackage.GeoPackage.JavaType;
+import com.augtech.geoapi.geopackage.geometry.GeometryDecoder;
+import com.augtech.geoapi.geopackage.table.FeaturesTable;
+import com.vividsolutions.jts.geom.Geometry;
+
+/** A forward-only reader of {@link SimpleFeature}'s from a single {@link FeaturesTable}.<p>
+ * Features are decoded one row at a time directly from the underlying {@link ICursor}
+ * as the reader is iterated, therefore memory use does not grow with the size of the
+ * table. The table is read in 'pages' of {@link GeoPackage#MAX_RECORDS_PER_CURSOR} records
+ * ordered by the primary key, so only one page is held by the cursor at any time. The
+ * page query is prepared once and re-executed with the last key read bound to it.<p>
+ * By default each geometry is decoded as the feature is built. A geometry mode can be passed
+ * on construction to build {@link LazyGeometryFeature}'s, which only decode the geometry when it 
+ * is requested, or to skip the geometry entirely.<p>
+ * The reader must be closed once finished with to release the cursor, even if
+ * it has not been read to the end.
+ *
+ * @author Augmented Technologies Ltd.
+ *
+ */
+public class FeatureReader implements Iterator<SimpleFeature>, Closeable {
+	/** Decode each geometry as the feature is read (the default) */
+	public static final int GEOMETRY_DECODE = 0;
+	/** Hold each geometry BLOB on a {@link LazyGeometryFeature} and decode on first use */
+	public static final int GEOMETRY_LAZY = 1;
+	/** Do not read the geometry. Features are built with a <code>Null</code> geometry. The
+	 * statement and feature type should not include the geometry column, so that SQLite does
+	 * not load the BLOB's */
+	public static final int GEOMETRY_NONE = 2;
+	
+	private GeoPackage geoPackage;
+	private FeaturesTable featTable;
+	private GeometryDecoder geomDecoder;
+	private String sqlStatement = null;
+	private String pk;
+	private String featureFieldName;
+	private SimpleFeatureType featureType;
+	private List<AttributeType> attrTypes;
+
+	/* Cursor column index and Java type for each attribute type. Built
+	 * from the first page as the column order is the same for every page */
+	private int[] colIdx = null;
+	private JavaType[] colTypes = null;
+	private int geomTypeIdx = -1, pkIdx = -1, fidIdx = -1;
+
+	private ISQLStatement pageStmt = null;
+	private HitSet hitSet = null;
+	private ICursor cursor = null;
+	private SimpleFeature nextFeature = null;
+	private boolean finished = false;
+	private int lastPK = Integer.MIN_VALUE, pageCount = 0, recCount = 0;
+	private int geometryMode = GEOMETRY_DECODE;
+	private double[] parameters = null;
+	private long startTime = 0;
+
+	/** Create a new FeatureReader for a full SQL statement on a FeaturesTable. No query
+	 * is issued until the first call to {@link #hasNext()} or {@link #next()}.
+	 *
+	 * @param geoPackage The GeoPackage to read from
+	 * @param sqlStatement A SQL statement selecting all columns from the table. The statement
+	 * is queried as a sub-query to page through the records by primary key. If <code>Null</code> the
+	 * reader will not return any features.
+	 * @param featTable The FeaturesTable being read
+	 * @param geomDecoder The type of {@linkplain GeometryDecoder} to use.
+	 * @throws Exception If the table definition or primary key cannot be determined
+	 */
+	public FeatureReader(GeoPackage geoPackage, String sqlStatement, FeaturesTable featTable,
+			GeometryDecoder geomDecoder) throws Exception {
+		this(geoPackage, sqlStatement, featTable, null, geomDecoder);
+	}
+	/** Create a new FeatureReader for a full SQL statement on a FeaturesTable, building
+	 * features of the supplied type. No query is issued until the first call to 
+	 * {@link #hasNext()} or {@link #next()}.
+	 *
+	 * @param geoPackage The GeoPackage to read from
+	 * @param sqlStatement A SQL statement selecting the columns for each attribute on the feature type, 
+	 * along with the primary key and feature ID columns. The statement is queried as a sub-query 
+	 * to page through the records by primary key. If <code>Null</code> the reader will not return any features.
+	 * @param featTable The FeaturesTable being read
+	 * @param featureType The type to build features with, such as from {@link FeaturesTable#getSchema(String[])}.
+	 * If <code>Null</code> the full schema of the table is used.
+	 * @param geomDecoder The type of {@linkplain GeometryDecoder} to use.
+	 * @throws Exception If the table definition or primary key cannot be determined
+	 */
+	public FeatureReader(GeoPackage geoPackage, String sqlStatement, FeaturesTable featTable,
+			SimpleFeatureType featureType, GeometryDecoder geomDecoder) throws Exception {
+		this(geoPackage, sqlStatement, featTable, featureType, GEOMETRY_DECODE, geomDecoder);
+	}
+	/** Create a new FeatureReader for a full SQL statement on a FeaturesTable, building
+	 * features of the supplied type and reading the geometry as set by the geometry mode. 
+	 * No query is issued until the first call to {@link #hasNext()} or {@link #next()}.
+	 *
+	 * @param geoPackage The GeoPackage to read from
+	 * @param sqlStatement A SQL statement selecting the columns for each attribute on the feature type, 
+	 * along with the primary key and feature ID columns. The statement is queried as a sub-query 
+	 * to page through the records by primary key. If <code>Null</code> the reader will not return any features.
+	 * @param featTable The FeaturesTable being read
+	 * @param featureType The type to build features with, such as from {@link FeaturesTable#getSchema(String[])}.
+	 * If <code>Null</code> the full schema of the table is used.
+	 * @param geometryMode One of {@link #GEOMETRY_DECODE}, {@link #GEOMETRY_LAZY}
+	 * or {@link #GEOMETRY_NONE}
+	 * @param geomDecoder The type of {@linkplain GeometryDecoder} to use.
+	 * @throws Exception If the table definition or primary key cannot be determined
+	 * @throws IllegalArgumentException If the geometry mode is unknown
+	 */
+	public FeatureReader(GeoPackage geoPackage, String sqlStatement, FeaturesTable featTable,
+			SimpleFeatureType featureType, int geometryMode, GeometryDecoder geomDecoder) throws Exception {
+
+		if (geometryMode < GEOMETRY_DECODE || geometryMode > GEOMETRY_NONE)
+			throw new IllegalArgumentException("Unknown geometry mode "+geometryMode);
+		
+		this.geoPackage = geoPackage;
+		this.geometryMode = geometryMode;
+		this.featTable = featTable;
+		this.geomDecoder = geomDecoder;
+
+		if (sqlStatement==null) {
+			finished = true;
+			return;
+		}
+
+		this.featureType = featureType==null ? featTable.getSchema() : featureType;
+		this.attrTypes = this.featureType.getTypes();
+		this.featureFieldName = featTable.getFeatureIDField();
+		this.pk = featTable.getPrimaryKey(geoPackage);
+
+		if (GeoPackage.MODE_STRICT) {
+			if (pk.equals("rowid"))
+				throw new Exception("Primary key not defined on table "+featTable.getTableName() );
+		}
+
+		/* Page over the caller's statement as a sub-query, so the key test is applied
+		 * to the whole of any where clause (including one containing OR). SQLite flattens 
+		 * simple sub-queries, so the primary key index is still used */
+		sqlStatement = sqlStatement.trim();
+		sqlStatement = sqlStatement.endsWith(";") ? sqlStatement.substring(0, sqlStatement.length()-1) : sqlStatement;
+		this.sqlStatement = "SELECT * FROM ("+sqlStatement+") WHERE "+pk+" > ? ORDER BY "+pk+" LIMIT ?";
+
+		startTime = System.currentTimeMillis();
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (nextFeature==null && !finished) {
+			nextFeature = readNext();
+		}
+		return nextFeature!=null;
+	}
+
+	@Override
+	public SimpleFeature next() {
+		if (!hasNext()) throw new NoSuchElementException();
+
+		SimpleFeature sf = nextFeature;
+		nextFeature = null;
+		return sf;
+	}
+	/** Not supported - Features cannot be removed through the reader */
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException("Remove is not supported on a FeatureReader");
+	}
+	/** Close this reader, releasing the underlying cursor. Once closed
+	 * no further features will be returned.
+	 *
+	 */
+	@Override
+	public void close() {
+		if (cursor!=null) {
+			cursor.close();
+			cursor = null;
+		}
+		if (pageStmt!=null) {
+			pageStmt.close();
+			pageStmt = null;
+		}
+		if (hitSet!=null) {
+			hitSet.drop();
+			hitSet = null;
+		}
+		if (sqlStatement!=null && !finished) {
+			geoPackage.log.log(Level.INFO,
+					String.format("%s %s feature(s) built in %s seconds",
+							recCount,featTable.getTableName(),(System.currentTimeMillis()-startTime)/1000)
+							);
+		}
+		finished = true;
+		nextFeature = null;
+		// Lazy features built by this reader may still be decoding
+		synchronized (geomDecoder) {
+			geomDecoder.clear();
+		}
+	}
+	/** Get how the geometry of each feature is read
+	 *
+	 * @return One of {@link #GEOMETRY_DECODE}, {@link #GEOMETRY_LAZY}
+	 * or {@link #GEOMETRY_NONE}
+	 */
+	public int getGeometryMode() {
+		return geometryMode;
+	}
+	/** Set values for '?' parameters in the SQL statement for this reader. These
+	 * are bound ahead of the paging parameters on each page query.
+	 *
+	 * @param parameters The values in parameter order
+	 */
+	void setParameters(double[] parameters) {
+		this.parameters = parameters;
+	}
+	/** Set a {@link HitSet} that the SQL statement for this reader selects from.
+	 * The HitSet is dropped when this reader is closed.
+	 * 
+	 * @param hitSet
+	 */
+	void setHitSet(HitSet hitSet) {
+		this.hitSet = hitSet;
+	}
+	/** Get the number of features read so far
+	 *
+	 * @return
+	 */
+	public int getCount() {
+		return recCount;
+	}
+	/** Get the {@link SimpleFeatureType} that the features returned by this
+	 * reader are built with.
+	 *
+	 * @return
+	 */
+	public SimpleFeatureType getFeatureType() {
+		return this.featureType;
+	}
+	/** Move to the next row, querying the next page of records when the current one
+	 * is exhausted, and build a feature from it.
+	 *
+	 * @return The next feature or <code>Null</code> if there are no more records.
+	 */
+	private SimpleFeature readNext() {
+
+		while (true) {
+
+			if (cursor==null) {
+				if (pageStmt==null) pageStmt = geoPackage.getDatabase().prepare( sqlStatement );
+				int param = 1;
+				if (parameters!=null) {
+					for (double d : parameters) pageStmt.bindDouble(param++, d);
+				}
+				pageStmt.bindInt(param++, lastPK);
+				pageStmt.bindInt(param, GeoPackage.MAX_RECORDS_PER_CURSOR);
+				cursor = pageStmt.executeQuery();
+				pageCount = 0;
+			}
+
+			if (cursor.moveToNext()) {
+				pageCount++;
+				return buildFeature();
+			}
+
+			// Page exhausted. An empty page means no more records
+			cursor.close();
+			cursor = null;
+
+			if (pageCount==0) {
+				close();
+				return null;
+			}
+		}
+
+	}
+	/** Build the column look-ups for the cursor against the attribute types
+	 * on the feature type.
+	 *
+	 */
+	private void buildColumnIndex() {
+		String[] colNames = cursor.getColumnNames();
+
+		colIdx = new int[attrTypes.size()];
+		colTypes = new JavaType[attrTypes.size()];
+		String geomColumn = null;
+		try {
+			geomColumn = featTable.getGeometryInfo().getColumnName();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+
+		for (int typeIdx=0; typeIdx < attrTypes.size(); typeIdx++) {
+			String fieldName = attrTypes.get( typeIdx ).getName().getLocalPart();
+			colIdx[typeIdx] = indexOf(colNames, fieldName);
+
+			if (fieldName.equals(geomColumn)) {
+				geomTypeIdx = typeIdx;
+			} else if (colIdx[typeIdx]>-1) {
+				GpkgField gf = featTable.getField(fieldName);
+				colTypes[typeIdx] = geoPackage.sqlTypeMap.get( gf.getFieldType().toLowerCase() );
+				if (colTypes[typeIdx]==null || colTypes[typeIdx]==JavaType.UNKNOWN)
+					throw new IllegalArgumentException("Unknown SQL data type '"+gf.getFieldType()+"'");
+			}
+		}
+
+		pkIdx = indexOf(colNames, pk);
+		fidIdx = indexOf(colNames, featureFieldName);
+	}
+	/** Build a new SimpleFeature from the current cursor row
+	 *
+	 * @return
+	 */
+	private SimpleFeature buildFeature() {
+		if (colIdx==null) buildColumnIndex();
+
+		// Get our feature ID or build from primary key
+		String fid;
+		if (featureFieldName.equals("id")) {
+			fid = featTable.getTableName()+"."+cursor.getInt(pkIdx);
+		} else {
+			fid = cursor.getString(fidIdx);
+		}
+
+		ArrayList<Object> attrValues = new ArrayList<Object>(attrTypes.size());
+		Geometry theGeom = null;
+		byte[] geomData = null;
+
+		/* For each type definition, get the value, ensuring the
+		 * correct order is maintained on the value list*/
+		for (int typeIdx=0; typeIdx < attrTypes.size(); typeIdx++) {
+
+			if (typeIdx==geomTypeIdx) {
+				if (geometryMode==GEOMETRY_LAZY) {
+					geomData = cursor.getBlob(colIdx[typeIdx]);
+				} else if (geometryMode==GEOMETRY_DECODE) {
+					// If geometry column, decode to actual Geometry
+					try {
+						theGeom = geomDecoder.setGeometryData( cursor.getBlob(colIdx[typeIdx]) ).getGeometry();
+					} catch (IOException e) {
+						throw new IllegalStateException("Unable to decode geometry for feature "+fid, e);
+					}
+				}
+			} else if (colIdx[typeIdx]==-1) {
+				attrValues.add(null);
+			} else {
+				attrValues.add( GpkgTable.readValue(cursor, colIdx[typeIdx], colTypes[typeIdx]) );
+			}
+
+		}
+
+		// Store the last key we saw for the next page query
+		lastPK = cursor.getInt(pkIdx);
+		recCount++;
+
+		if (geometryMode==GEOMETRY_LAZY)
+			return new LazyGeometryFeature(fid, attrValues, featureType, geomData, geomDecoder);
+		
+		return new SimpleFeatureImpl(fid, attrValues, featureType, theGeom );
+	}
+
+	private static int indexOf(String[] names, String name) {
+		for (int i=0; i<names.length; i++) {
+			if (names[i].equals(name)) return i;
+		}
+		return -1;
+	}
+}
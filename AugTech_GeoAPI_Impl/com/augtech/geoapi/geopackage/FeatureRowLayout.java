@@ -0,0 +1,285 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+import com.augtech.geoapi.geopackage.geometry.GeometryEncoder;
+import com.augtech.geoapi.geopackage.table.FeatureField;
+import com.augtech.geoapi.geopackage.table.FeaturesTable;
+import com.vividsolutions.jts.geom.Geometry;
+
+/** The fixed column order used to insert {@link SimpleFeature}'s into a {@link FeaturesTable}.<p>
+ * The layout is built once per table (see {@link GeoPackage#getRowLayout(FeaturesTable)}). Each
+ * feature is converted to an Object[] in column order by {@link #fillRow(SimpleFeature, Object[])},
+ * with the attribute index of each column looked up once per {@link SimpleFeatureType} rather than
+ * for every feature. The row is then bound to an INSERT statement from {@link #getInsertSQL()} with a
+ * binder chosen from the declared type of each column.
+ *
+ * @author Augmented Technologies Ltd.
+ *
+ */
+public class FeatureRowLayout {
+	/* Where each column value comes from */
+	static final int SOURCE_ATTRIBUTE = 0;
+	static final int SOURCE_FEATURE_ID = 1;
+	static final int SOURCE_GEOMETRY = 2;
+	/* How each column value is bound */
+	static final int BIND_ANY = 0;
+	static final int BIND_INTEGER = 1;
+	static final int BIND_REAL = 2;
+	static final int BIND_TEXT = 3;
+	static final int BIND_BLOB = 4;
+
+	private GeoPackage geoPackage;
+	private FeaturesTable table;
+	private FeatureField[] fields;
+	private String[] columns;
+	private int[] sources;
+	private int[] binders;
+	private int geomDimension;
+	private String insertSQL;
+	/* Attribute indexes for the last feature type seen */
+	private SimpleFeatureType lastType = null;
+	private int[] lastAttrIndex = null;
+
+	/** Build the layout for a features table
+	 *
+	 * @param geoPackage The GeoPackage the table is in
+	 * @param table The table to build the layout for
+	 * @throws Exception If the table definition cannot be read
+	 */
+	FeatureRowLayout(GeoPackage geoPackage, FeaturesTable table) throws Exception {
+		this.geoPackage = geoPackage;
+		this.table = table;
+		this.geomDimension = geoPackage.getGeometryDimension(table);
+
+		// Every column except the (auto-increment) primary key
+		List<FeatureField> cols = new ArrayList<FeatureField>();
+		for (GpkgField f : table.getFields()) {
+			if (!f.isPrimaryKey()) cols.add( (FeatureField)f );
+		}
+
+		int numCols = cols.size();
+		fields = cols.toArray(new FeatureField[numCols]);
+		columns = new String[numCols];
+		sources = new int[numCols];
+		binders = new int[numCols];
+
+		StringBuffer sql = new StringBuffer();
+		StringBuffer vals = new StringBuffer();
+		sql.append("INSERT INTO [").append(table.getTableName()).append("] (");
+
+		for (int i=0; i<numCols; i++) {
+			FeatureField field = fields[i];
+			columns[i] = field.getFieldName();
+
+			if (field.isFeatureID()) {
+				sources[i] = SOURCE_FEATURE_ID;
+			} else if (field.getFieldType().equals(GpkgTable.FIELD_TYPE_GEOMETRY)) {
+				sources[i] = SOURCE_GEOMETRY;
+			} else {
+				sources[i] = SOURCE_ATTRIBUTE;
+			}
+			binders[i] = getBinder( field.getFieldType() );
+
+			sql.append("[").append(columns[i]).append("],");
+			vals.append("?,");
+		}
+		if (numCols>0) {
+			sql.deleteCharAt(sql.length()-1);
+			vals.deleteCharAt(vals.length()-1);
+		}
+		sql.append(") VALUES (").append(vals).append(")");
+		insertSQL = sql.toString();
+	}
+	/** Get the column names in the order they appear in a row
+	 *
+	 * @return
+	 */
+	public String[] getColumns() {
+		return columns;
+	}
+	/** Get an INSERT statement for the table with a parameter for
+	 * each column in order.
+	 *
+	 * @return
+	 */
+	public String getInsertSQL() {
+		return insertSQL;
+	}
+	/** Fill a row with the values from a feature, in column order. The geometry
+	 * is encoded by {@link GeoPackage#encodeGeometry(Geometry, int)} and any data column
+	 * constraints are checked.
+	 *
+	 * @param feature The feature to get the values from
+	 * @param row The row to fill, which must be the same length as {@link #getColumns()}.
+	 * If <code>Null</code> a new row is created.
+	 * @return The row
+	 * @throws IOException If the geometry cannot be encoded
+	 * @throws IllegalArgumentException If the feature has no geometry column, or a value fails
+	 * a constraint in {@link GeoPackage#MODE_STRICT}
+	 */
+	public Object[] fillRow(SimpleFeature feature, Object[] row) throws IOException {
+		return fillRow(feature, row, null);
+	}
+	/** Fill a row with the values from a feature, in column order, encoding the geometry
+	 * with the supplied encoder. This can be called from multiple threads at once, as long as
+	 * each thread uses its own encoder and row.
+	 *
+	 * @param feature The feature to get the values from
+	 * @param row The row to fill, or <code>Null</code> to create a new row
+	 * @param encoder The encoder to use for the geometry, or <code>Null</code> to use the
+	 * GeoPackage's encoder.
+	 * @return The row
+	 * @throws IOException If the geometry cannot be encoded
+	 * @throws IllegalArgumentException If the feature has no geometry column, or a value fails
+	 * a constraint in {@link GeoPackage#MODE_STRICT}
+	 * @see #fillRow(SimpleFeature, Object[])
+	 */
+	public Object[] fillRow(SimpleFeature feature, Object[] row, GeometryEncoder encoder) throws IOException {
+		if (row==null) row = new Object[columns.length];
+
+		int[] attrIndex = getAttributeIndex( feature.getType() );
+
+		boolean hasGeom = false;
+		Object value = null;
+
+		for (int i=0; i<columns.length; i++) {
+
+			switch (sources[i]) {
+			case SOURCE_GEOMETRY:
+				Geometry geom = (Geometry)feature.getDefaultGeometry();
+				row[i] = encoder==null ? geoPackage.encodeGeometry(geom, geomDimension)
+						: geoPackage.encodeGeometry(geom, geomDimension, encoder);
+				hasGeom = true;
+				continue;
+			case SOURCE_FEATURE_ID:
+				value = feature.getID();
+				break;
+			default:
+				/* If the field is not available on the type, set to null to ensure
+				 * the value list matches the table definition */
+				value = attrIndex[i]==-1 ? null : feature.getAttribute( attrIndex[i] );
+			}
+
+			// Check constraint if not a blob
+			FeatureField field = fields[i];
+			if (field.getMimeType()==null && field.getConstraint()!=null
+					&& !field.getConstraint().isValueValid( value )) {
+
+				if (GeoPackage.MODE_STRICT) {
+					throw new IllegalArgumentException("Field "+columns[i]+" did not pass constraint check");
+				}
+				geoPackage.log.log(Level.WARNING, "Field "+columns[i]+" did not pass constraint check; Inserting Null");
+				value = null;
+			}
+
+			row[i] = value;
+		}
+
+		if (!hasGeom)
+			throw new IllegalArgumentException("Feature "+feature.getID()+" has no Geomtery defined");
+
+		return row;
+	}
+	/** Bind a row to a statement from {@link #getInsertSQL()}
+	 *
+	 * @param stmt The statement to bind to
+	 * @param row The values in column order
+	 */
+	public void bind(ISQLStatement stmt, Object[] row) {
+		for (int i=0; i<columns.length; i++) {
+			Object value = row[i];
+			int idx = i+1;
+
+			switch (binders[i]) {
+			case BIND_INTEGER:
+				if (value instanceof Integer || value instanceof Long || value instanceof Short) {
+					stmt.bindLong(idx, ((Number)value).longValue());
+					continue;
+				}
+				break;
+			case BIND_REAL:
+				if (value instanceof Double || value instanceof Float) {
+					stmt.bindDouble(idx, ((Number)value).doubleValue());
+					continue;
+				}
+				break;
+			case BIND_TEXT:
+				if (value instanceof String) {
+					stmt.bindString(idx, (String)value);
+					continue;
+				}
+				break;
+			case BIND_BLOB:
+				if (value instanceof byte[]) {
+					stmt.bindBlob(idx, (byte[])value);
+					continue;
+				}
+				break;
+			}
+
+			// Nulls or values that don't match the column type
+			BulkWriter.bindValue(stmt, idx, value);
+		}
+	}
+	/** Get the table this layout is for
+	 *
+	 * @return
+	 */
+	public FeaturesTable getTable() {
+		return table;
+	}
+	/** Get the attribute index of each column on a feature type. The indexes
+	 * are only looked up when the type changes. */
+	private synchronized int[] getAttributeIndex(SimpleFeatureType type) {
+		if (type==lastType) return lastAttrIndex;
+
+		int[] attrIndex = new int[columns.length];
+		for (int i=0; i<columns.length; i++) {
+			if (sources[i]!=SOURCE_ATTRIBUTE) continue;
+
+			int idx = type.indexOf( columns[i].toLowerCase().equals("__id") ? "id" : columns[i] );
+			attrIndex[i] = idx < type.getAttributeCount() ? idx : -1;
+		}
+		lastType = type;
+		lastAttrIndex = attrIndex;
+
+		return attrIndex;
+	}
+	/** Get the binder for a declared column type */
+	private static int getBinder(String fieldType) {
+		String t = fieldType==null ? "" : fieldType.toUpperCase();
+
+		if (t.contains("INT")) {
+			return BIND_INTEGER;
+		} else if (t.equals("REAL") || t.equals("DOUBLE") || t.equals("FLOAT")) {
+			return BIND_REAL;
+		} else if (t.equals("TEXT") || t.startsWith("VARCHAR")) {
+			return BIND_TEXT;
+		} else if (t.equals("BLOB") || t.equals(GpkgTable.FIELD_TYPE_GEOMETRY)) {
+			return BIND_BLOB;
+		}
+		return BIND_ANY;
+	}
+}
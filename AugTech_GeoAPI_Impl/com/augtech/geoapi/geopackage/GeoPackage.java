@@ -18,7 +18,6 @@
 
 package com.augtech.geoapi.geopackage;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -43,9 +42,8 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
 import com.augtech.geoapi.feature.SimpleFeatureImpl;
 import com.augtech.geoapi.geometry.BoundingBoxImpl;
 import com.augtech.geoapi.geopackage.geometry.GeometryDecoder;
-import com.augtech.geoapi.geopackage.geometry.OGCWKBWriter;
+import com.augtech.geoapi.geopackage.geometry.GeometryEncoder;
 import com.augtech.geoapi.geopackage.geometry.StandardGeometryDecoder;
-import com.augtech.geoapi.geopackage.table.FeatureField;
 import com.augtech.geoapi.geopackage.table.FeaturesTable;
 import com.augtech.geoapi.geopackage.table.FeaturesTable.GeometryInfo;
 import com.augtech.geoapi.geopackage.table.GpkgContents;
@@ -70,7 +68,7 @@ import com.augtech.geoapi.geopackage.views.SpatialRefSys;
 import com.augtech.geoapi.referncing.CoordinateReferenceSystemImpl;
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
-import com.vividsolutions.jts.io.ByteOrderValues;
+import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.simplify.DouglasPeuckerSimplifier;
 
 public class GeoPackage {
@@ -94,6 +92,12 @@ public class GeoPackage {
 	private Map<String, GpkgTable> sysTables = new HashMap<String,  GpkgTable>();
 	private Map<String, GpkgView> sysViews = new HashMap<String, GpkgView>();
 	private Map<String, GpkgTable> userTables = new HashMap<String, GpkgTable>();
+	/** Cached insert layouts for feature tables */
+	private Map<String, FeatureRowLayout> rowLayouts = new HashMap<String, FeatureRowLayout>();
+	/** Recently read tile images */
+	private TileCache tileCache = new TileCache(TileCache.DEFAULT_MAX_BYTES);
+	/** In-memory copy of the system tables */
+	private GpkgCatalog catalog = new GpkgCatalog(this);
 	
 	/** The name to create (if required) and test for use as a FeatureID within the GeoPackage */
 	public static String FEATURE_ID_FIELD_NAME = "feature_id";
@@ -228,6 +232,7 @@ public class GeoPackage {
 			
 			for (String stmt : GpkgSpatialRefSys.INSERT_DEFAULT_SPATIAL_REF_SYS) 
 				sqlDB.execSQL( stmt );
+			catalog.invalidate(GpkgSpatialRefSys.TABLE_NAME);
 			
 			// Try setting the application_id pragma through Sqlite implementation
 			if ( !setGpkgAppPragma() ) setGpkgAppHeader();
@@ -256,6 +261,8 @@ public class GeoPackage {
 	 * 
 	 */
 	public void close() {
+		tileCache.clear();
+		catalog.invalidate();
 		this.sqlDB.close();
 	}
 	/** Check for the {@link #GPKG_APPLICATION_ID} in the database Pragma application_id
@@ -400,6 +407,8 @@ public class GeoPackage {
 	 * @param zoomLevel What tile level, or zoom, should the query get
 	 * @return
 	 * @throws Exception
+	 * @see #getTiles(String, BoundingBox, int, boolean, ITileCallback) for drawing tiles
+	 * without constructing features
 	 */
 	public List<SimpleFeature> getTiles(final String tableName, final BoundingBox bbox, int zoomLevel) throws Exception {
 		log.log(Level.INFO, "BBOX query for images in "+tableName);
@@ -417,46 +426,62 @@ public class GeoPackage {
 		// Is BBOX valid against the table or tile_matrix_set?
 		if ( !checkBBOXAgainstLast(tilesTable, bbox, false, false)) return allFeats;
 		
-		// Tile matrix data for this table
-		GpkgRecords tmRecs = getSystemTable(GpkgTileMatrix.TABLE_NAME).query(
-				this, "table_name='"+tableName+"' AND zoom_level="+zoomLevel);
-		if (tmRecs.getFieldInt(0, "zoom_level")!=zoomLevel)
-			throw new Exception("Zoom level "+zoomLevel+" is not defined for this tile pyramid");
-		
-		int tmWidth = tmRecs.getFieldInt(0, "tile_width");
-		int tmHeight = tmRecs.getFieldInt(0, "tile_height");
-		double pixX = tmRecs.getFieldDouble(0, "pixel_x_size");
-		double pixY = tmRecs.getFieldDouble(0, "pixel_y_size");
-		
-		// Construct a temporary matrix_set bbox (for convenience)
-		GpkgRecords tms = getSystemTable(GpkgTileMatrixSet.TABLE_NAME).query(this, "table_name='"+tilesTable.tableName+"'");
-		BoundingBox tmsBox = new BoundingBoxImpl(
-				tms.getFieldDouble(0, "min_x"), 
-				tms.getFieldDouble(0, "max_x"), 
-				tms.getFieldDouble(0, "min_y"), 
-				tms.getFieldDouble(0, "max_y"));
-		
-		/* TODO Get all tiles in the table at the specified zoom and check the bounds?,
-		 * or something else...
-		 */
-		
-		
-		/* Calculate the min and max rows and columns.
-		 * This mechanism works for 3857 (slippy tiles) but serious doubt it does for 
-		 * anything else, therefore have to test with other projections and create a generic
-		 * mechanism for creating a where clause from a bounding box */
-		int minX =  (int) Math.round( (bbox.getMinX() - tmsBox.getMinX() ) / (tmWidth * pixX) );
-		int maxX =  (int) Math.round( (bbox.getMaxX() - tmsBox.getMinX() ) / (tmWidth * pixX) );
-		int minY =  (int) Math.round( (tmsBox.getMaxY() - bbox.getMaxY() ) / (tmHeight * pixY) );
-		int maxY =  (int) Math.round( (tmsBox.getMaxY() - bbox.getMinY() ) / (tmHeight * pixY) );
+		int[] range = getTileRange((TilesTable)tilesTable, bbox, zoomLevel);
+		if (range==null) return allFeats;
 		
 		String strWhere = String.format(
 				"zoom_level=%s AND tile_column >= %s AND tile_column <= %s AND tile_row >=%s AND tile_row <=%s", 
-				zoomLevel, minX, maxX, minY, maxY);
+				zoomLevel, range[0], range[1], range[2], range[3]);
 
 		return getTiles(tableName, strWhere);
 		
 	}
+	/** Read all tiles in the table, at the specified zoom, in order to cover the supplied
+	 * bounding box, passing each to a callback as it is read.<p>
+	 * Unlike {@link #getTiles(String, BoundingBox, int)} no features or tile geometries
+	 * are constructed and the tiles are not held in memory, therefore this is suited to
+	 * drawing a map view.
+	 * 
+	 * @param tableName The table to query
+	 * @param bbox The extents of the area to cover
+	 * @param zoomLevel What tile level, or zoom, should the query get
+	 * @param centreFirst If True the tiles are ordered by their distance from the centre
+	 * of the bounding box, so a view can be drawn progressively from the centre out.
+	 * @param callback The callback to receive each tile
+	 * @return The number of tiles passed to the callback
+	 * @throws Exception If the zoom level is not defined for the table
+	 */
+	public int getTiles(final String tableName, final BoundingBox bbox, int zoomLevel, boolean centreFirst,
+			ITileCallback callback) throws Exception {
+		
+		TilesTable tilesTable = (TilesTable)getUserTable( tableName, GpkgTable.TABLE_TYPE_TILES );
+		
+		// Is BBOX valid against the table or tile_matrix_set?
+		if ( !checkBBOXAgainstLast(tilesTable, bbox, false, false)) return 0;
+		
+		int[] range = getTileRange(tilesTable, bbox, zoomLevel);
+		if (range==null) return 0;
+		
+		return tilesTable.readTiles(zoomLevel, range[0], range[1], range[2], range[3], centreFirst, callback);
+	}
+	/** Calculate the range of tile columns and rows to cover a bounding box
+	 * 
+	 * @param tilesTable The table
+	 * @param bbox The extents of the area to cover
+	 * @param zoomLevel The zoom level
+	 * @return int[] as min column, max column, min row, max row or <code>Null</code>
+	 * if the bounding box is outside the tile matrix
+	 * @throws Exception If the zoom level is not defined for the table
+	 * @see TileMatrixInfo#getTileRange(BoundingBox, int)
+	 */
+	private int[] getTileRange(TilesTable tilesTable, BoundingBox bbox, int zoomLevel) throws Exception {
+		
+		TileMatrixInfo tmi = tilesTable.getTileMatrixInfo();
+		if (!tmi.isZoomDefined(zoomLevel))
+			throw new Exception("Zoom level "+zoomLevel+" is not defined for this tile pyramid");
+		
+		return tmi.getTileRange(bbox, zoomLevel);
+	}
 	/** Query the GeoPackage for one or more tiles based on a where clause.
 	 * The SimpleFeature's that are returned have a {@linkplain FeatureType} name
 	 * matching the tableName and a {@link GeometryDescriptor} mathing that defined
@@ -595,6 +620,134 @@ public class GeoPackage {
 		return getFeatures(stmt, featTable, geomDecoder);
 		
 	}
+	/** Get a list of {@link SimpleFeature} from the GeoPackage by specifying a where clause, 
+	 * reading only the supplied properties.<p>
+	 * Only the named columns (plus the primary key and feature ID) are selected from the table and
+	 * the features are built with a {@link SimpleFeatureType} holding just those attributes, which
+	 * saves reading and decoding unused columns on wide tables.
+	 * 
+	 * @param tableName The <i>case sensitive</i> table name that holds the features
+	 * @param whereClause The 'Where' clause, less the where. Passing Null will return 
+	 * all records from the table.
+	 * @param propertyNames The names of the attributes to read. The geometry is only read if its
+	 * column is included. If <code>Null</code> all attributes are read.
+	 * @param geomDecoder The type of {@linkplain GeometryDecoder} to use.
+	 * @return A list of SimpleFeature's or an empty list if none were found in the specified table
+	 * matching the the filter
+	 * @throws Exception
+	 * @throws IllegalArgumentException If a property is not a column on the table
+	 * @see FeaturesTable#getSchema(String[])
+	 */
+	public List<SimpleFeature> getFeatures(String tableName, String whereClause, String[] propertyNames, 
+			GeometryDecoder geomDecoder) throws Exception {
+		
+		return getFeatures(tableName, whereClause, propertyNames, FeatureReader.GEOMETRY_DECODE, geomDecoder);
+		
+	}
+	/** Get a list of {@link SimpleFeature} from the GeoPackage by specifying a where clause,
+	 * reading only the supplied properties and choosing how the geometry is read.<p>
+	 * {@link FeatureReader#GEOMETRY_LAZY} returns {@link LazyGeometryFeature}'s that hold the
+	 * geometry BLOB and only decode it on the first call to <code>getDefaultGeometry()</code>, 
+	 * with the bounds available from the geometry header. {@link FeatureReader#GEOMETRY_NONE} 
+	 * leaves the geometry column out of the query and the feature type, so the geometry is not
+	 * read at all.
+	 * 
+	 * @param tableName The <i>case sensitive</i> table name that holds the features
+	 * @param whereClause The 'Where' clause, less the where. Passing Null will return 
+	 * all records from the table.
+	 * @param propertyNames The names of the attributes to read, or <code>Null</code> for all.
+	 * @param geometryMode One of {@link FeatureReader#GEOMETRY_DECODE}, {@link FeatureReader#GEOMETRY_LAZY}
+	 * or {@link FeatureReader#GEOMETRY_NONE}
+	 * @param geomDecoder The type of {@linkplain GeometryDecoder} to use.
+	 * @return A list of SimpleFeature's or an empty list if none were found in the specified table
+	 * matching the the filter
+	 * @throws Exception
+	 * @throws IllegalArgumentException If a property is not a column on the table, or the
+	 * geometry mode is unknown
+	 */
+	public List<SimpleFeature> getFeatures(String tableName, String whereClause, String[] propertyNames, 
+			int geometryMode, GeometryDecoder geomDecoder) throws Exception {
+		
+		return readAll( getFeatureReader(tableName, whereClause, propertyNames, geometryMode, geomDecoder) );
+		
+	}
+	/** Get a {@link FeatureReader} over all features in the supplied table. Features are
+	 * decoded one at a time as the reader is iterated, so this is the preferred way of
+	 * reading large tables. The reader must be closed once finished with.
+	 * 
+	 * @param tableName The <i>case sensitive</i> table name to read
+	 * @param geomDecoder The type of {@linkplain GeometryDecoder} to use.
+	 * @return A new FeatureReader
+	 * @throws Exception
+	 */
+	public FeatureReader getFeatureReader(String tableName, GeometryDecoder geomDecoder) throws Exception {
+		return getFeatureReader(tableName, null, geomDecoder);
+	}
+	/** Get a {@link FeatureReader} over the features in a table matching a where clause
+	 * (for example {@code featureId='pipe.1234'} or {@code id=1234} ). Features are
+	 * decoded one at a time as the reader is iterated. The reader must be closed once 
+	 * finished with.
+	 * 
+	 * @param tableName The <i>case sensitive</i> table name that holds the features
+	 * @param whereClause The 'Where' clause, less the where. Passing Null will read 
+	 * all records from the table.
+	 * @param geomDecoder The type of {@linkplain GeometryDecoder} to use.
+	 * @return A new FeatureReader
+	 * @throws Exception
+	 */
+	public FeatureReader getFeatureReader(String tableName, String whereClause, GeometryDecoder geomDecoder) 
+			throws Exception {
+		return getFeatureReader(tableName, whereClause, null, geomDecoder);
+	}
+	/** Get a {@link FeatureReader} over the features in a table matching a where clause,
+	 * reading only the supplied properties. The reader must be closed once finished with.
+	 * 
+	 * @param tableName The <i>case sensitive</i> table name that holds the features
+	 * @param whereClause The 'Where' clause, less the where. Passing Null will read 
+	 * all records from the table.
+	 * @param propertyNames The names of the attributes to read. The geometry is only read if its
+	 * column is included. If <code>Null</code> all attributes are read.
+	 * @param geomDecoder The type of {@linkplain GeometryDecoder} to use.
+	 * @return A new FeatureReader
+	 * @throws Exception
+	 * @throws IllegalArgumentException If a property is not a column on the table
+	 * @see #getFeatures(String, String, String[], GeometryDecoder)
+	 */
+	public FeatureReader getFeatureReader(String tableName, String whereClause, String[] propertyNames, 
+			GeometryDecoder geomDecoder) throws Exception {
+		return getFeatureReader(tableName, whereClause, propertyNames, FeatureReader.GEOMETRY_DECODE, geomDecoder);
+	}
+	/** Get a {@link FeatureReader} over the features in a table matching a where clause,
+	 * reading only the supplied properties and choosing how the geometry is read. The reader 
+	 * must be closed once finished with.
+	 * 
+	 * @param tableName The <i>case sensitive</i> table name that holds the features
+	 * @param whereClause The 'Where' clause, less the where. Passing Null will read 
+	 * all records from the table.
+	 * @param propertyNames The names of the attributes to read, or <code>Null</code> for all. 
+	 * @param geometryMode One of {@link FeatureReader#GEOMETRY_DECODE}, {@link FeatureReader#GEOMETRY_LAZY}
+	 * or {@link FeatureReader#GEOMETRY_NONE}. For <code>GEOMETRY_NONE</code> the geometry column is
+	 * never selected, whether named in the properties or not.
+	 * @param geomDecoder The type of {@linkplain GeometryDecoder} to use.
+	 * @return A new FeatureReader
+	 * @throws Exception
+	 * @throws IllegalArgumentException If a property is not a column on the table, or the
+	 * geometry mode is unknown
+	 * @see #getFeatures(String, String, String[], int, GeometryDecoder)
+	 */
+	public FeatureReader getFeatureReader(String tableName, String whereClause, String[] propertyNames, 
+			int geometryMode, GeometryDecoder geomDecoder) throws Exception {
+		
+		FeaturesTable featTable = (FeaturesTable)getUserTable( tableName, GpkgTable.TABLE_TYPE_FEATURES );
+		
+		if (geometryMode==FeatureReader.GEOMETRY_NONE)
+			propertyNames = featTable.getNonGeometryNames(propertyNames);
+		
+		String stmt = featTable.getSelect(propertyNames);
+		if (whereClause!=null && !whereClause.equals("")) stmt+=" WHERE "+whereClause;
+		
+		return new FeatureReader(this, stmt, featTable, featTable.getSchema(propertyNames), geometryMode, geomDecoder);
+	}
 	/** Get a list of all SimpleFeature's within, or intersecting with, the supplied BoundingBox.
 	 * 
 	 * @param tableName The <i>case sensitive</i> table name in this GeoPackage to query.
@@ -610,14 +763,89 @@ public class GeoPackage {
 	 */
 	public List<SimpleFeature> getFeatures(final String tableName, final BoundingBox bbox, boolean includeIntersect, 
 			boolean testExtents, GeometryDecoder geomDecoder) throws Exception {
+		
+		return readAll( getFeatureReader(tableName, bbox, includeIntersect, testExtents, geomDecoder) );
+		
+	}
+	/** Get a {@link FeatureReader} over all SimpleFeature's within, or intersecting with, the 
+	 * supplied BoundingBox. The reader must be closed once finished with.<p>
+	 * Features are selected on their envelope only.
+	 * 
+	 * @param tableName The <i>case sensitive</i> table name in this GeoPackage to query.
+	 * @param bbox The {@link BoundingBox} to find features in, or intersecting with.
+	 * @param includeIntersect Should feature's intersecting with the supplied box be returned?
+	 * @param testExtents Should the bbox be tested against the data extents in gpkg_contents before
+	 * issuing the query? If <code>False</code> a short test on the extents is performed. (In case table
+	 * extents are null) 
+	 * @param geomDecoder The {@link GeometryDecoder} to use for reading feature geometries.
+	 * @return A new FeatureReader
+	 * @throws Exception If the SRS of the supplied {@link BoundingBox} does not match the SRS of
+	 * the table being queried.
+	 * @see #getFeatures(String, BoundingBox, boolean, boolean, GeometryDecoder)
+	 */
+	public FeatureReader getFeatureReader(final String tableName, final BoundingBox bbox, boolean includeIntersect, 
+			boolean testExtents, GeometryDecoder geomDecoder) throws Exception {
+		return getFeatureReader(tableName, bbox, includeIntersect, testExtents, false, null, geomDecoder);
+	}
+	/** Get a {@link FeatureReader} over all SimpleFeature's within, or intersecting with, the 
+	 * supplied BoundingBox. The reader must be closed once finished with.<p>
+	 * The query is run in two phases. Firstly candidate features are found by their envelope, either
+	 * from the R*Tree index (if available) or the GeoPackage geometry header. If <code>exactTest</code>
+	 * is set, the geometry of each candidate is then decoded and tested against the box. Attributes
+	 * are only read for the features that are returned.<p>
+	 * With <code>includeIntersect</code> False, a feature is 'within' the box if the box contains it or it
+	 * contains the box.
+	 * 
+	 * @param tableName The <i>case sensitive</i> table name in this GeoPackage to query.
+	 * @param bbox The {@link BoundingBox} to find features in, or intersecting with.
+	 * @param includeIntersect Should feature's intersecting with the supplied box be returned?
+	 * @param testExtents Should the bbox be tested against the data extents in gpkg_contents before
+	 * issuing the query? If <code>False</code> a short test on the extents is performed. (In case table
+	 * extents are null) 
+	 * @param exactTest If <code>True</code> the actual geometry of each candidate feature is tested
+	 * against the box, otherwise only the envelope is tested.
+	 * @param geomDecoder The {@link GeometryDecoder} to use for reading feature geometries.
+	 * @return A new FeatureReader
+	 * @throws Exception If the SRS of the supplied {@link BoundingBox} does not match the SRS of
+	 * the table being queried.
+	 */
+	public FeatureReader getFeatureReader(final String tableName, final BoundingBox bbox, boolean includeIntersect, 
+			boolean testExtents, boolean exactTest, GeometryDecoder geomDecoder) throws Exception {
+		return getFeatureReader(tableName, bbox, includeIntersect, testExtents, exactTest, null, geomDecoder);
+	}
+	/** Get a {@link FeatureReader} over all SimpleFeature's within, or intersecting with, the 
+	 * supplied BoundingBox, reading only the supplied properties. The reader must be closed once 
+	 * finished with.<p>
+	 * The features are selected as {@link #getFeatureReader(String, BoundingBox, boolean, boolean, boolean, GeometryDecoder)}
+	 * and then only the named columns are read for those returned.
+	 * 
+	 * @param tableName The <i>case sensitive</i> table name in this GeoPackage to query.
+	 * @param bbox The {@link BoundingBox} to find features in, or intersecting with.
+	 * @param includeIntersect Should feature's intersecting with the supplied box be returned?
+	 * @param testExtents Should the bbox be tested against the data extents in gpkg_contents before
+	 * issuing the query? If <code>False</code> a short test on the extents is performed. (In case table
+	 * extents are null) 
+	 * @param exactTest If <code>True</code> the actual geometry of each candidate feature is tested
+	 * against the box, otherwise only the envelope is tested.
+	 * @param propertyNames The names of the attributes to read. The geometry is only read if its
+	 * column is included. If <code>Null</code> all attributes are read.
+	 * @param geomDecoder The {@link GeometryDecoder} to use for reading feature geometries.
+	 * @return A new FeatureReader
+	 * @throws Exception If the SRS of the supplied {@link BoundingBox} does not match the SRS of
+	 * the table being queried.
+	 * @throws IllegalArgumentException If a property is not a column on the table
+	 */
+	public FeatureReader getFeatureReader(final String tableName, final BoundingBox bbox, boolean includeIntersect, 
+			boolean testExtents, boolean exactTest, String[] propertyNames, GeometryDecoder geomDecoder) throws Exception {
 		log.log(Level.INFO, "BBOX query for features in "+tableName);
 		
-		List<SimpleFeature> allFeats = new ArrayList<SimpleFeature>();
-
 		FeaturesTable featTable = (FeaturesTable)getUserTable( tableName, GpkgTable.TABLE_TYPE_FEATURES );
+		SimpleFeatureType featureType = featTable.getSchema(propertyNames);
+		String select = featTable.getSelect(propertyNames);
 		
 		// Is BBOX valid against the table?
-		if ( !checkBBOXAgainstLast(featTable, bbox, includeIntersect, testExtents)) return allFeats;
+		if ( !checkBBOXAgainstLast(featTable, bbox, includeIntersect, testExtents)) 
+			return new FeatureReader(this, null, featTable, featureType, geomDecoder);
 		
 		GeometryInfo gi = featTable.getGeometryInfo();
 		
@@ -629,91 +857,158 @@ public class GeoPackage {
 				throw new Exception("Primary key not defined on table "+featTable.getTableName() );
 		}
 		
+		Envelope query = new Envelope(bbox.getMinX(), bbox.getMaxX(), bbox.getMinY(), bbox.getMaxY());
+		
 		// If this GeoPackage is RTREE enabled, use the spatial index
-		if (sqlDB.hasRTreeEnabled() && gi.hasSpatialIndex()) {
-
-			String idxTable = "[rtree_"+tableName+"_"+gi.getColumnName()+"]";
-
-			sqlStmt.append("SELECT [").append(tableName).append("].* FROM [").append(tableName).append("], ");
-			sqlStmt.append(idxTable).append(" WHERE [");
-			sqlStmt.append(tableName).append("].").append(pk).append("=");
-			sqlStmt.append(idxTable).append(".id");
-			sqlStmt.append(" AND MinX>=").append( bbox.getMinX() );
-			sqlStmt.append(" AND MaxX<=").append( bbox.getMaxX() );
-			sqlStmt.append(" AND MinY>=").append( bbox.getMinY() );
-			sqlStmt.append(" AND MaxY<=").append( bbox.getMaxY() );
-			
-			return getFeatures(sqlStmt.toString(), featTable, geomDecoder);
+		boolean useIndex = sqlDB.hasRTreeEnabled() && gi.hasSpatialIndex();
+		String candidates = null;
+		double[] candidateParams = new double[0];
+		if (useIndex) {
+			/* The box is bound as parameters, so the same statements are re-used from
+			 * the statement cache for every query on this table */
+			candidates = buildIndexQuery("rtree_"+tableName+"_"+gi.getColumnName(), includeIntersect);
+			candidateParams = getIndexParameters(query, includeIntersect);
 			
+			// Envelope test only, so the candidates are the result
+			if (!exactTest) {
+				sqlStmt.append(select).append(" WHERE ").append(pk);
+				sqlStmt.append(" IN (").append(candidates).append(")");
+				FeatureReader reader = new FeatureReader(this, sqlStmt.toString(), featTable, featureType, geomDecoder);
+				reader.setParameters( candidateParams );
+				return reader;
+			}
 		}
 
-		/* Query all records in the feature table and check the header envelope
-		 * for matching/ intersecting bounds. If the envelope is null, then the full
-		 * geometry is read and checked */
-		
-		sqlStmt.append("SELECT * FROM [").append(tableName).append("] WHERE id IN(");
+		/* Query the candidate records (or all records if not indexed) in the feature table and check
+		 * the header envelope for matching/ intersecting bounds. If the envelope is null, then the full
+		 * geometry is read and checked. Matching id's are written to a temporary table which
+		 * the final query selects from */
+		HitSet hits = new HitSet( getDatabase() );
 		
 		// Query only for feature geometry and test that before getting all attributes
 		long startTime = System.currentTimeMillis();
-		int totalRecs = featTable.getCount(this);
 		
-		int lastPK = 0, recCount = 0, hitCount = 0;
+		int lastPK = Integer.MIN_VALUE, recCount = 0;
 		boolean hit = false;
 		Envelope headerEnv = null;
-		Envelope query = new Envelope(bbox.getMinX(), bbox.getMaxX(), bbox.getMinY(), bbox.getMaxY());
+		Geometry queryGeom = exactTest ? new GeometryFactory().toGeometry( query ) : null;
 		
+		// Compile the page query once, then bind the last key for each page
+		String sql = String.format("SELECT %s,[%s] FROM [%s] WHERE %s%s > ? ORDER BY %s LIMIT ?",
+				pk, gi.getColumnName(), tableName, 
+				useIndex ? pk+" IN ("+candidates+") AND " : "", pk, pk);
+		ISQLStatement pageStmt = getDatabase().prepare( sql );
 		
-		/* Deprecated getCount() on Cursor to save the cursor iterating
-		 * whole ResultSet on underlying Cursor implementation */
-		
-		// While we have less records than total for table..
-		while (recCount < totalRecs) {
+		try {
+			boolean hasRecords = true;
+			while (hasRecords) {
 			
-			String sql = String.format("SELECT %s,%s FROM [%s] WHERE %s > %s ORDER BY %s LIMIT %s",
-					pk, gi.getColumnName(), tableName, pk, lastPK, pk, MAX_RECORDS_PER_CURSOR);
-			ICursor cPage = getDatabase().doRawQuery( sql );
+				for (int p=0; p<candidateParams.length; p++) pageStmt.bindDouble(p+1, candidateParams[p]);
+				pageStmt.bindInt(candidateParams.length+1, lastPK);
+				pageStmt.bindInt(candidateParams.length+2, MAX_RECORDS_PER_CURSOR);
+				ICursor cPage = pageStmt.executeQuery();
 
-			// Go through these x number of records
-			boolean hasRecords = false;
-			while (cPage.moveToNext()) {
-				
-				hasRecords = true;
-				// Decode the geometry and test
-				headerEnv = geomDecoder.setGeometryData( cPage.getBlob(1) ).getEnvelope();
+				// Go through these x number of records
+				hasRecords = false;
+				while (cPage.moveToNext()) {
 				
-				// No bbox from header, so decode the whole geometry (a lot slower)
-				if (headerEnv.isNull() && !geomDecoder.isEmptyGeom()) {
-					headerEnv = geomDecoder.getGeometry().getEnvelopeInternal();
-				}
-	
-				// Test bounds
-				hit = (includeIntersect ? query.intersects( headerEnv ) : false) ||  query.contains( headerEnv ) || headerEnv.contains( query );
-				if (hit) {
-					sqlStmt.append(cPage.getInt(0)).append(",");
-					hitCount++;
+					hasRecords = true;
+					// Store the last key we saw for the next page query
+					lastPK = cPage.getInt(0);
+					recCount++;
+					
+					// Decode the geometry header
+					byte[] geomBytes = cPage.getBlob(1);
+					if (geomBytes==null) continue;
+					headerEnv = geomDecoder.setGeometryData( geomBytes ).getEnvelope();
+					if (geomDecoder.isEmptyGeom()) continue;
+					
+					// Test bounds, unless already done by the index
+					if (!useIndex) {
+						// No bbox from header, so read it from the WKB coordinates (slower)
+						if (headerEnv.isNull()) {
+							headerEnv = geomDecoder.computeEnvelope();
+							if (headerEnv.isNull()) continue;
+						}
+						hit = (includeIntersect ? query.intersects( headerEnv ) : false) ||  query.contains( headerEnv ) || headerEnv.contains( query );
+						if (!hit) continue;
+					}
+					
+					// Exact test on the actual geometry
+					if (exactTest) {
+						Geometry geom = geomDecoder.getGeometry();
+						hit = (includeIntersect ? queryGeom.intersects( geom ) : false) || queryGeom.contains( geom ) || geom.contains( queryGeom );
+						if (!hit) continue;
+					}
+					
+					hits.add( lastPK );
 				}
-				
-				// Store the last key we saw for the next page query
-				lastPK = cPage.getInt(0);
-				recCount++;
-			}
 		
-			cPage.close();
-			if (hasRecords==false) break;
+				cPage.close();
+				hits.flush();
+			}
+		} catch (Exception e) {
+			hits.drop();
+			throw e;
+		} finally {
+			pageStmt.close();
 		}
 
-		//log.log(Level.INFO, recCount+" geometries checked in "+(System.currentTimeMillis()-startTime)/1000+" seconds");
+		log.log(Level.INFO, recCount+" geometries checked in "+(System.currentTimeMillis()-startTime)/1000+" seconds");
 		
 		
 		// Didn't find anything
-		if (hitCount==0) return allFeats;
+		if (hits.size()==0) {
+			hits.drop();
+			return new FeatureReader(this, null, featTable, featureType, geomDecoder);
+		}
 		
-		sqlStmt.setLength(sqlStmt.length()-1);// How many id's can the DB handle??
-		sqlStmt.append(");");
+		sqlStmt.append(select).append(" WHERE ").append(pk);
+		sqlStmt.append(" IN (").append( hits.getSelect() ).append(")");
 
-		log.log(Level.INFO, "Found "+hitCount+" features in "+tableName+" - Building SimpleFeature(s)...");
-		return getFeatures(sqlStmt.toString(), featTable, geomDecoder );
+		log.log(Level.INFO, "Found "+hits.size()+" features in "+tableName+" - Building SimpleFeature(s)...");
+		FeatureReader reader = new FeatureReader(this, sqlStmt.toString(), featTable, featureType, geomDecoder );
+		reader.setHitSet( hits );
+		return reader;
+		
+	}
+	/** Build an index-only query selecting the id's of features from an R*Tree whose
+	 * envelope is within, or intersects with, a query envelope. The envelope is left as
+	 * '?' parameters, to be bound with the values from {@link #getIndexParameters(Envelope, boolean)}
+	 * 
+	 * @param idxTable The R*Tree table name
+	 * @param includeIntersect If True envelopes intersecting the query are selected, otherwise
+	 * only those within the query or containing it.
+	 * @return The SQL statement
+	 */
+	private static String buildIndexQuery(String idxTable, boolean includeIntersect) {
+		StringBuffer sb = new StringBuffer();
+		sb.append("SELECT id FROM [").append(idxTable).append("] WHERE ");
 		
+		if (includeIntersect) {
+			sb.append("minx<=? AND maxx>=? AND miny<=? AND maxy>=?");
+		} else {
+			// Within the query, or containing the query
+			sb.append("(minx>=? AND maxx<=? AND miny>=? AND maxy<=?)");
+			sb.append(" OR (minx<=? AND maxx>=? AND miny<=? AND maxy>=?)");
+		}
+		
+		return sb.toString();
+	}
+	/** Get the values to bind to the parameters of the query built by 
+	 * {@link #buildIndexQuery(String, boolean)}
+	 * 
+	 * @param query The query envelope
+	 * @param includeIntersect As passed to buildIndexQuery
+	 * @return The values in parameter order
+	 */
+	private static double[] getIndexParameters(Envelope query, boolean includeIntersect) {
+		if (includeIntersect) {
+			return new double[] {query.getMaxX(), query.getMinX(), query.getMaxY(), query.getMinY()};
+		}
+		return new double[] {
+				query.getMinX(), query.getMaxX(), query.getMinY(), query.getMaxY(),
+				query.getMinX(), query.getMaxX(), query.getMinY(), query.getMaxY()};
 	}
 	
 	/** Get a list of {@link SimpleFeature} from the GeoPackage by specifying a full SQL statement.
@@ -728,100 +1023,24 @@ public class GeoPackage {
 	protected List<SimpleFeature> getFeatures(String sqlStatement, FeaturesTable featTable, GeometryDecoder geomDecoder)
 			throws Exception {
 		
-		List<SimpleFeature> allFeats = new ArrayList<SimpleFeature>();
-
-		int totalRecs = featTable.getCount(this);
-
-		if (totalRecs==0) return allFeats;
-		
-		SimpleFeatureType featureType = featTable.getSchema();
-		List<AttributeType> attrTypes = featureType.getTypes();
-		GeometryInfo geomInfo = featTable.getGeometryInfo();
-		
-		// Find the feature id field
-		String featureFieldName = featTable.getFeatureIDField();
-				
-		/* Query the table in 'pages' of LIMIT number */
-
-		long startTime = System.currentTimeMillis();
-		String pk = featTable.getPrimaryKey(this);
-		
-		if (MODE_STRICT) {
-			if (pk.equals("rowid"))
-				throw new Exception("Primary key not defined on table "+featTable.getTableName() );
-		}
+		// The reader stops on the first empty page, so no count is needed up front
+		return readAll( new FeatureReader(this, sqlStatement, featTable, geomDecoder) );
 		
-		int lastPK = 0, recCount = 0;
-		sqlStatement = sqlStatement.endsWith(";") ? sqlStatement.substring(0, sqlStatement.length()-1) : sqlStatement;
-		int whereIdx = sqlStatement.toLowerCase().indexOf("where");
-		sqlStatement = whereIdx>0 ? sqlStatement+" AND " : sqlStatement+" WHERE ";
-		ArrayList<Object> attrValues = new ArrayList<Object>();
-		Object value = null;
-		String fid;
-		GpkgRecords featRecords = null;
-		String sql = ""; 
-		String fieldName = null;
-		
-		// While we have less records than total for table..
-		while (recCount < totalRecs) {
-
-			sql = String.format(sqlStatement+"%s > %s ORDER BY %s LIMIT %s",
-					pk, lastPK, pk, MAX_RECORDS_PER_CURSOR);
-			featRecords = featTable.rawQuery(this, sql );
-
-			if (featRecords.size()==0) break;
-
-			// Now go through each record building the feature with it's attribute values
-			for (int rIdx=0; rIdx < featRecords.size(); rIdx++) {
-
-				// Create new list so previous values are not overridden 
-				attrValues = new ArrayList<Object>();
-				
-				// Get our feature ID or build from primary key
-				if (featureFieldName.equals("id")) {
-					fid = featTable.getTableName()+"."+featRecords.getFieldInt(rIdx, pk);
-				} else {
-					fid = featRecords.getFieldString(rIdx, featureFieldName);
-				}
-				
-				Geometry theGeom = null;
-				
-				/* For each type definition, get the value, ensuring the 
-				 * correct order is maintained on the value list*/
-				for (int typeIdx=0; typeIdx < attrTypes.size(); typeIdx++) {
-					
-					fieldName = attrTypes.get( typeIdx ).getName().getLocalPart();
-					value = featRecords.get(rIdx).get( featRecords.getFieldIdx(fieldName) );
-					
-					if (fieldName.equals(geomInfo.getColumnName())) {
-						// If geometry column, decode to actual Geometry
-						theGeom = geomDecoder.setGeometryData( (byte[])value ).getGeometry();
-					} else {
-						attrValues.add(value);
-					}
-					
-				}
-				attrValues.trimToSize();
-
-				// Create the feature and add to list of all features
-				allFeats.add( new SimpleFeatureImpl(fid, attrValues, featureType, theGeom ) );
-
-				// Store the last key we saw for the next page query
-				lastPK = featRecords.getFieldInt(rIdx, pk );
-				recCount++;
-			}
+	}
+	/** Read all remaining features from a {@link FeatureReader} in to a list
+	 * and close the reader.
+	 * 
+	 * @param reader The reader to drain
+	 * @return A list of SimpleFeature's, or an empty list if the reader had none
+	 */
+	private List<SimpleFeature> readAll(FeatureReader reader) {
+		List<SimpleFeature> allFeats = new ArrayList<SimpleFeature>();
+		try {
+			while (reader.hasNext()) allFeats.add( reader.next() );
+		} finally {
+			reader.close();
 		}
-
-		featRecords = null;
-		geomDecoder.clear();
-		
-		log.log(Level.INFO,
-				String.format("%s %s feature(s) built in %s seconds",
-						recCount,featTable.getTableName(),(System.currentTimeMillis()-startTime)/1000)
-						);
-		
 		return allFeats;
-		
 	}
 
 	/** Convenience method to check the passed bounding box (for a query) CRS matches
@@ -874,20 +1093,17 @@ public class GeoPackage {
 			
 			if (checkTable instanceof TilesTable) {
 				// If a tiles table and no bounds in contents, check the tile_matrix_set definitions
-					GpkgRecords tms = null;
-					try {
-						tms = getSystemTable(GpkgTileMatrixSet.TABLE_NAME).query(this, "table_name='"+checkTable.tableName+"'");
-					} catch (Exception e) {
-						e.printStackTrace();
-						return false;
-					}
+					GpkgColumnarRecords tms = catalog.getRecords(GpkgTileMatrixSet.TABLE_NAME);
+					int row = catalog.getRow(GpkgTileMatrixSet.TABLE_NAME, checkTable.tableName);
+					if (row==-1) return false;
+					
 					// Construct a bbox to test against
-					CoordinateReferenceSystem crs = new CoordinateReferenceSystemImpl(""+tms.getFieldInt(0, "srs_id"));
+					CoordinateReferenceSystem crs = new CoordinateReferenceSystemImpl(""+tms.getFieldInt(row, "srs_id"));
 					BoundingBox tmsBox = new BoundingBoxImpl(
-							tms.getFieldDouble(0, "min_x"), 
-							tms.getFieldDouble(0, "max_x"), 
-							tms.getFieldDouble(0, "min_y"), 
-							tms.getFieldDouble(0, "max_y"),
+							tms.getFieldDouble(row, "min_x"), 
+							tms.getFieldDouble(row, "max_x"), 
+							tms.getFieldDouble(row, "min_y"), 
+							tms.getFieldDouble(row, "max_y"),
 							crs);
 					queryTable = queryBBox.intersects( tmsBox ) || tmsBox.contains( queryBBox );
 
@@ -935,10 +1151,10 @@ public class GeoPackage {
 		return gpkgTable;
 	}
 	/** Get a list of all user tables within the current GeoPackage.<p>
-	 * Note that the results of this query are not cached in the same way that system tables are and
-	 * the table data is not populated until a relevant method/ query (on the table) is 
-	 * called. This allows for quicker/ lower cost checks on the number and/ or names of tables in 
-	 * the GeoPackage.
+	 * The table names are taken from the {@link GpkgCatalog} and the same cached instances 
+	 * as {@link #getUserTable(String, String)} are returned. The table data is not populated until
+	 * a relevant method/ query (on the table) is called. This allows for quicker/ lower cost checks
+	 * on the number and/ or names of tables in the GeoPackage.
 	 * 
 	 * @param tableType Either {@link GpkgTable#TABLE_TYPE_FEATURES} or {@link GpkgTable#TABLE_TYPE_TILES}
 	 * @return A new list of tables or an empty list if none were found or the wrong tableType was specified.
@@ -949,47 +1165,76 @@ public class GeoPackage {
 		if (!tableType.equals(GpkgTable.TABLE_TYPE_FEATURES) && !tableType.equals(GpkgTable.TABLE_TYPE_TILES))
 			return ret;
 		
-		ICursor tables = null;
-		try {
-			tables = sysTables.get(GpkgContents.TABLE_NAME).query(this, new String[]{"table_name"},
-					"data_type='"+tableType+"'");
-		} catch (Exception e) {
-			e.printStackTrace();
-			return ret;
-		}
-		
-		GpkgTable tab = null;
-		
-		while(tables.moveToNext()) {
-			
-			if (tableType.equals(GpkgTable.TABLE_TYPE_FEATURES)) {
-				tab = new FeaturesTable(this, tables.getString(0));
-			} else {
-				tab = new TilesTable(this, tables.getString(0));
-			}
-			
-			ret.add(tab);
+		for (String tableName : catalog.getTableNames(tableType)) {
+			ret.add( getUserTable(tableName, tableType) );
 		}
-		tables.close();
 		
 		ret.trimToSize();
 		return ret;
 	}
 
-	/** Insert a collection of tiles in to the GeoPackage
+	/** Create or re-build the R*Tree spatial index on every features table in
+	 * this GeoPackage. This is useful for GeoPackages received without
+	 * the 'gpkg_rtree_index' extension, as queries by bounding box on un-indexed
+	 * tables have to read the geometry of every feature.
 	 * 
-	 * @param features
+	 * @return The number of tables indexed
+	 * @throws Exception If the underlying database does not have R*Tree support
+	 * @see FeaturesTable#createSpatialIndex()
+	 */
+	public int rebuildSpatialIndexes() throws Exception {
+		if (!sqlDB.hasRTreeEnabled())
+			throw new Exception("R*Tree indexing is not available on this database");
+		
+		int tables = 0;
+		for (GpkgTable gt : getUserTables(GpkgTable.TABLE_TYPE_FEATURES)) {
+			FeaturesTable ft = (FeaturesTable)gt;
+			try {
+				ft.createSpatialIndex();
+				tables++;
+			} catch (Exception e) {
+				log.log(Level.WARNING, "Spatial index not created on "+ft.getTableName()+": "+e.getMessage());
+			}
+		}
+		
+		return tables;
+	}
+	/** Insert a collection of tiles in to the GeoPackage.<p>
+	 * The tiles for each table are written by a {@link BulkTileWriter}, so are validated against
+	 * a cached copy of the tile matrix and committed in batches of {@link BulkWriter#DEFAULT_COMMIT_EVERY}.
+	 * If a tile cannot be inserted the tiles before it remain in the GeoPackage.
+	 * 
+	 * @param features The tiles as described in {@link #insertTile(SimpleFeature)}
 	 * @return The number of tiles inserted
 	 * @throws Exception
 	 */
 	public int insertTiles(Collection<SimpleFeature> features) throws Exception {
-		int numInserted = 0;
-		long rec = -1;
 		
+		// Tiles could be for different tables, so split for each writer
+		Map<String, List<SimpleFeature>> sfByTable = new HashMap<String, List<SimpleFeature>>();
 		for (SimpleFeature sf : features) {
-			rec = insertTile(sf);
-			if( rec>-1 ) numInserted++;
+			String tName = sf.getType().getName().getLocalPart();
+			List<SimpleFeature> thisTable = sfByTable.get(tName);
 			
+			if (thisTable==null) {
+				thisTable = new ArrayList<SimpleFeature>();
+				sfByTable.put(tName, thisTable);
+			}
+			thisTable.add(sf);
+		}
+		
+		int numInserted = 0;
+		
+		for (Map.Entry<String, List<SimpleFeature>> e : sfByTable.entrySet()) {
+			BulkTileWriter writer = openBulkTileWriter(e.getKey(), BulkWriter.DEFAULT_COMMIT_EVERY, null, null);
+			try {
+				for (SimpleFeature sf : e.getValue()) {
+					writer.add(sf);
+				}
+			} finally {
+				writer.close();
+				numInserted += writer.getNumInserted();
+			}
 		}
 		
 		return numInserted;
@@ -1010,37 +1255,36 @@ public class GeoPackage {
 	 */
 	public long insertTile(SimpleFeature feature) throws Exception {
 		
-		byte[] tileData = null;
-		// Cycle feature attrs to get the image data (assumes first byte[] is image)
-		for (int i=0; i<feature.getAttributeCount(); i++) {
-			if (feature.getAttribute(i) instanceof byte[]) {
-				tileData = (byte[]) feature.getAttribute(i);
-				break;
-			}
-		}
-		if (tileData==null) {
-			throw new Exception("Could not find image data");
-		}
+		byte[] tileData = BulkTileWriter.getTileData(feature);
+		int[] zxy = BulkTileWriter.getTileReference(feature);
 		
-		//id=49/1/12/2023/1347.PNG.tile
-		String[] idParts = feature.getID().split("/");
-		if (idParts.length<3) {
-			throw new Exception("Could not decode tile reference from ID");
-		}
-		int x=0, y=0, z=0;
-		try {
-			z = Integer.valueOf(idParts[idParts.length-3]);
-			x = Integer.valueOf(idParts[idParts.length-2]);
-			String sY = idParts[idParts.length-1];
-			y = Integer.valueOf(sY.substring(0, sY.indexOf(".")));
-		} catch (Exception e) {
-			throw new Exception("Could not decode tile reference from ID");
-		}
+		return insertTile(feature.getType().getName().getLocalPart(), tileData, zxy[1], zxy[2], zxy[0]);
+		
+	}
+	/** Open a {@link BulkTileWriter} for loading a large number of tiles into a tiles table.
+	 * The tile matrix is read once and each tile reference validated in memory. Tiles are 
+	 * committed every <code>commitEvery</code> tiles and the last_change for the table only
+	 * updated when the writer is closed.
+	 * 
+	 * @param tableName The <i>case sensitive</i> name of the tiles table
+	 * @param commitEvery The number of tiles to write in each transaction
+	 * @param journalMode A value for PRAGMA journal_mode, or <code>Null</code> to leave unchanged
+	 * @param synchronous A value for PRAGMA synchronous, or <code>Null</code> to leave unchanged
+	 * @return A new BulkTileWriter, which must be closed once all tiles have been added.
+	 * @throws Exception If the table does not exist in the GeoPackage or has no tile matrix
+	 * @see #openBulkWriter(String, int, String, String)
+	 */
+	public BulkTileWriter openBulkTileWriter(String tableName, int commitEvery, String journalMode, 
+			String synchronous) throws Exception {
 		
-		return insertTile(feature.getType().getName().getLocalPart(), tileData, x, y, z);
+		TilesTable tilesTable = (TilesTable)getUserTable( tableName, GpkgTable.TABLE_TYPE_TILES );
 		
+		return new BulkTileWriter(this, tilesTable, commitEvery, journalMode, synchronous);
 	}
-	/** Get a single tile by its zoom level column and row from this GeoPackage
+	/** Get a single tile by its zoom level column and row from this GeoPackage.<p>
+	 * Tiles are held in the {@link TileCache} once read, so repeated requests for the same tile
+	 * do not query the database. Otherwise the tile is read by {@link TilesTable#readTile(int, int, int)}.
+	 * The returned byte[] may be shared with the cache and must not be modified.
 	 * 
 	 * @param tableName The name of the table to query
 	 * @param x_col X reference (the column)
@@ -1049,14 +1293,36 @@ public class GeoPackage {
 	 * @return A byte[] or Null if no matching record is found
 	 *  
 	 * @throws Exception
+	 * @see #getTileCache()
 	 */
 	public byte[] getTile(final String tableName, int x_col, int y_row, int zoom) throws Exception {
 		
-		GpkgRecords recs = new TilesTable(this, tableName).query(this, 
-				String.format("zoom_level=%s AND tile_column=%s AND tile_row=%s", zoom, x_col, y_row)
-				);
+		byte[] tile = tileCache.get(tableName, zoom, x_col, y_row);
+		if (tile!=null) return tile;
+		
+		tile = ((TilesTable)getUserTable(tableName, GpkgTable.TABLE_TYPE_TILES)).readTile(zoom, x_col, y_row);
+		tileCache.put(tableName, zoom, x_col, y_row, tile);
 		
-		return recs.getFieldBlob(0, "tile_data");
+		return tile;
+	}
+	/** Get the cache of tile images used by {@link #getTile(String, int, int, int)}. The
+	 * size of the cache can be changed with {@link TileCache#setMaxBytes(long)}, or set to 0 to
+	 * disable caching. Tiles written other than through this library (such as by raw SQL) 
+	 * require the cache to be cleared.
+	 * 
+	 * @return
+	 */
+	public TileCache getTileCache() {
+		return tileCache;
+	}
+	/** Get the in-memory catalog of the system tables, which is used for all table,
+	 * geometry column, extension, SRS and tile matrix look-ups. If the database is changed
+	 * other than through this library call {@link GpkgCatalog#invalidate()}.
+	 * 
+	 * @return
+	 */
+	public GpkgCatalog getCatalog() {
+		return catalog;
 	}
 	/** Insert a single raster tile into the GeoPackage
 	 * 
@@ -1075,18 +1341,12 @@ public class GeoPackage {
 		TilesTable tilesTable = (TilesTable)getUserTable( tableName, GpkgTable.TABLE_TYPE_TILES );
 
 		// Is this data jpeg or png (only permissible types)
-		String pngHdr = new String( new byte[]{tile[0], tile[1], tile[2], tile[3]} );
-		String jpgHdr = Integer.toHexString(tile[0] & 0xFF)+Integer.toHexString(tile[1] & 0xFF);
-		if (!pngHdr.toLowerCase().contains("png") && !jpgHdr.equalsIgnoreCase("ffd8")) {
+		if (!BulkTileWriter.isImageTypeValid(tile)) {
 			throw new Exception("Tile image is neither PNG or JPG");
 		}
 
-		// Check the tile reference is valid for the tile-matrix
-		GpkgRecords matrix = getSystemTable(GpkgTileMatrix.TABLE_NAME).query(this, 
-				"table_name='"+tableName+"' AND zoom_level="+zoom);
-		int w = matrix.getFieldInt(0, "matrix_width");
-		int h = matrix.getFieldInt(0, "matrix_height");
-		if (tileColumn > w || tileColumn < 1 || tileRow > h || tileRow < 1 || w==-1 || h==-1) {
+		// Check the tile reference is valid for the (cached) tile-matrix
+		if (!tilesTable.getTileMatrixInfo().isTileInMatrix(tileColumn, tileRow, zoom)) {
 			throw new Exception("Supplied tile reference is outside the scope of the tile matrix for "+tableName);
 		}
 
@@ -1098,6 +1358,7 @@ public class GeoPackage {
 		
 		long recID = tilesTable.insert(this, values);
 		
+		tileCache.invalidate(tableName, zoom, tileColumn, tileRow);
 		if (recID>0) updateLastChange(tilesTable.getTableName(), tilesTable.getTableType());
 		
 		return recID;
@@ -1117,17 +1378,14 @@ public class GeoPackage {
 			// TODO Look-up the EPSG code number somehow?
 		}
 		
-		String strWhere = srsID>-2 ? "srs_id="+srsID : "srs_name='"+srsName+"'";
-
-		try {
-			ICursor cur = getSystemTable(GpkgSpatialRefSys.TABLE_NAME).query(
-					this, new String[]{"srs_name"}, strWhere);
-			
-			loaded = cur.moveToNext();
-			cur.close();
-			
-		} catch (Exception e) {
-			e.printStackTrace();
+		if (srsID>-2) return catalog.getRow(GpkgSpatialRefSys.TABLE_NAME, ""+srsID) > -1;
+		
+		GpkgColumnarRecords srs = catalog.getRecords(GpkgSpatialRefSys.TABLE_NAME);
+		if (srs==null) return false;
+		
+		int nameIdx = srs.getFieldIdx("srs_name");
+		for (int r=0; r<srs.size() && !loaded; r++) {
+			loaded = srsName.equals( srs.getString(r, nameIdx) );
 		}
 		
 		return loaded;
@@ -1158,8 +1416,25 @@ public class GeoPackage {
 	 * @param features
 	 * @return The number of records inserted
 	 * @throws Exception
+	 * @see #insertFeatures(Collection, int)
 	 */
 	public int insertFeatures(Collection<SimpleFeature> features) throws Exception {
+		return insertFeatures(features, 1);
+	}
+	/** Add all {@link SimpleFeature}'s on the supplied collection into the GeoPackage as a batch,
+	 * optionally encoding the features on a number of worker threads.<p>
+	 * With more than one encode thread, geometry encoding, simplification (see 
+	 * {@link #setSimplifyOnInsertion(int, double)}) and constraint checks are done by the workers
+	 * whilst the calling thread writes the encoded rows to the database, so the encoding overlaps 
+	 * with the database I/O. Features are still inserted in the order supplied.
+	 * 
+	 * @param features
+	 * @param encodeThreads The number of threads to encode features on. Values less than 2 
+	 * encode the features on the calling thread.
+	 * @return The number of records inserted
+	 * @throws Exception
+	 */
+	public int insertFeatures(Collection<SimpleFeature> features, int encodeThreads) throws Exception {
 		
 		/* Features within the collection could be different types, so split
 		 * in to seperate lists for batch insertion */
@@ -1177,44 +1452,30 @@ public class GeoPackage {
 		}
 		
 		int numInserted = 0;
-		FeaturesTable featTable = null;
 		
 		// For each set of feature's in our individual lists..
 		for (Map.Entry<Name, List<SimpleFeature>> e : sfByType.entrySet()) {
 			
-			featTable = (FeaturesTable)getUserTable( 
-					e.getKey().getLocalPart(), GpkgTable.TABLE_TYPE_FEATURES );
-			List<Map<String, Object>> insertVals = new ArrayList<Map<String, Object>>();
-			
-			Collection<GpkgField> tabFields = featTable.getFields();
-			
-			
-			// Get and check dimensional output
-			int mOpt = featTable.getGeometryInfo().getMOption();
-			int zOpt = featTable.getGeometryInfo().getZOption();
-			int dimension = 2;
-			if (	mOpt==Z_M_VALUES_MANDATORY || zOpt==Z_M_VALUES_MANDATORY 
-					|| mOpt==Z_M_VALUES_OPTIONAL || zOpt==Z_M_VALUES_OPTIONAL) {
-				dimension = 3;
-			}
-			if (mOpt==Z_M_VALUES_MANDATORY && zOpt==Z_M_VALUES_MANDATORY)
-				throw new IllegalArgumentException("4 dimensional output is not supported");
-			
-			
-			// Build values for each feature of this type..
-			for (SimpleFeature sf : e.getValue()) {
-				insertVals.add( buildInsertValues(sf, tabFields, dimension) );
+			// Insert all features of this type in a single transaction
+			BulkWriter writer = openBulkWriter(e.getKey().getLocalPart(), 
+					Math.max(1, e.getValue().size()), null, null);
+			boolean success = false;
+			try {
+				writer.addAll(e.getValue(), encodeThreads);
+				success = true;
+			} finally {
+				if (success) {
+					writer.close();
+				} else {
+					writer.abort();
+				}
 			}
 			
-			// Do the update on the table
-			numInserted += featTable.insert(this, insertVals);
-			insertVals = null;
+			numInserted += writer.getNumInserted();
 		}
 		
 		sfByType = null;
 		
-		if (numInserted>0) updateLastChange(featTable.getTableName(), featTable.getTableType());
-		
 		return numInserted; 
 	}
 	/** Insert a single {@link SimpleFeature} into the GeoPackage.
@@ -1232,7 +1493,64 @@ public class GeoPackage {
 		FeaturesTable featTable = (FeaturesTable)getUserTable( 
 				type.getName().getLocalPart(), GpkgTable.TABLE_TYPE_FEATURES );
 
-		// Get and check dimensional output
+		FeatureRowLayout layout = getRowLayout(featTable);
+		Object[] row = layout.fillRow(feature, null);
+		
+		ISQLStatement insert = sqlDB.prepare( layout.getInsertSQL() );
+		layout.bind(insert, row);
+		long recID = insert.executeInsert();
+		insert.close();
+		
+		if (recID>0) {
+			catalog.adjustCount(featTable.getTableName(), 1);
+			updateLastChange(featTable.getTableName(), featTable.getTableType());
+		}
+		
+		return recID;
+	}
+	/** Open a {@link BulkWriter} for loading a large number of records into a user table.
+	 * Rows are committed every {@link BulkWriter#DEFAULT_COMMIT_EVERY} records and the
+	 * database PRAGMA's are left unchanged.
+	 * 
+	 * @param tableName The <i>case sensitive</i> name of the features or tiles table
+	 * @return A new BulkWriter, which must be closed once all records have been added.
+	 * @throws Exception If the table does not exist in the GeoPackage
+	 * @see #openBulkWriter(String, int, String, String)
+	 */
+	public BulkWriter openBulkWriter(String tableName) throws Exception {
+		return openBulkWriter(tableName, BulkWriter.DEFAULT_COMMIT_EVERY, null, null);
+	}
+	/** Open a {@link BulkWriter} for loading a large number of records into a user table.<p>
+	 * The journal mode and synchronous PRAGMA's can optionally be changed for the duration of 
+	 * the load (for example to 'MEMORY' and 'OFF') and are restored when the writer is closed. Note
+	 * that the GeoPackage could be corrupted by a crash whilst these are set.
+	 * 
+	 * @param tableName The <i>case sensitive</i> name of the features or tiles table
+	 * @param commitEvery The number of records to write in each transaction
+	 * @param journalMode A value for PRAGMA journal_mode, or <code>Null</code> to leave unchanged
+	 * @param synchronous A value for PRAGMA synchronous, or <code>Null</code> to leave unchanged
+	 * @return A new BulkWriter, which must be closed once all records have been added.
+	 * @throws Exception If the table does not exist in the GeoPackage
+	 */
+	public BulkWriter openBulkWriter(String tableName, int commitEvery, String journalMode, 
+			String synchronous) throws Exception {
+		
+		String dataType = catalog.getDataType(tableName);
+		if (dataType==null)
+			throw new IllegalArgumentException("Table "+tableName+" does not exist in the GeoPackage");
+		
+		GpkgTable table = getUserTable(tableName, dataType);
+		
+		return new BulkWriter(this, table, commitEvery, journalMode, synchronous);
+	}
+	/** Get the number of dimensions to encode geometries with for a features
+	 * table, from the table's Z and M options.
+	 * 
+	 * @param featTable
+	 * @return 2 or 3
+	 * @throws Exception If the table requires both Z and M values
+	 */
+	int getGeometryDimension(FeaturesTable featTable) throws Exception {
 		int mOpt = featTable.getGeometryInfo().getMOption();
 		int zOpt = featTable.getGeometryInfo().getZOption();
 		int dimension = 2;
@@ -1243,92 +1561,24 @@ public class GeoPackage {
 		if (mOpt==Z_M_VALUES_MANDATORY && zOpt==Z_M_VALUES_MANDATORY)
 			throw new IllegalArgumentException("4 dimensional output is not supported");
 		
-		Map<String, Object> values = buildInsertValues(feature, featTable.getFields(), dimension);
-		
-		long recID = featTable.insert(this, values);
-		
-		if (recID>0) updateLastChange(featTable.getTableName(), featTable.getTableType());
-		
-		return recID;
+		return dimension;
 	}
-	/** Create a Map of field name to field value for inserting into a table.
+	/** Get the {@link FeatureRowLayout} used to insert features into a table. The layout
+	 * is built the first time it is requested and cached for subsequent inserts.
 	 * 
-	 * @param feature The {@link SimpleFeature}
-	 * @param tabFields The GeoPackage table fields to use for building the map.
-	 * @param geomDimension 2 or 3 for the Geomaetry ordinates/
-	 * @return A Map 
-	 * @throws IOException
+	 * @param featTable The table to get the layout for
+	 * @return The layout
+	 * @throws Exception If the table definition cannot be read
 	 */
-	private Map<String, Object> buildInsertValues(SimpleFeature feature, 
-			Collection<GpkgField> tabFields, int geomDimension) throws IOException {
-		
-		// Construct values
-		SimpleFeatureType type = feature.getType();
-		Map<String, Object> values = new HashMap<String, Object>();
-		Object value = null;
-		FeatureField field = null;
-		boolean passConstraint = true;
-		boolean hasGeom = false;
+	public FeatureRowLayout getRowLayout(FeaturesTable featTable) throws Exception {
+		FeatureRowLayout layout = rowLayouts.get(featTable.getTableName());
 		
-		// For each field defined in the table...
-		for (GpkgField f : tabFields) {
-			
-			if (f.isPrimaryKey()) continue; // We can't update the PK!
-		
-			field = (FeatureField)f;
-			
-			// If defined as feature id, use getID, else find the attribute
-			if ( field.isFeatureID() ) {
-				
-				value = feature.getID();
-				
-			} else if (field.getFieldType().equals(GpkgTable.FIELD_TYPE_GEOMETRY)) {
-				
-				values.put(field.getFieldName(), encodeGeometry( (Geometry)feature.getDefaultGeometry(), geomDimension ) );
-				hasGeom = true;
-				continue;
-				
-			} else {
-				
-				int idx = type.indexOf( field.getFieldName().toLowerCase().equals("__id") ? "id" : field.getFieldName() );
-				/* If the field is not available on the type, set to null to ensure
-				 * the value list matches the table definition */
-				if (idx==-1 || idx > type.getAttributeCount()) {
-					value = null; 
-				} else {
-					value = feature.getAttribute(idx);
-				}
-				
-			}
-
-			passConstraint = true;
-			
-			// Check constraint if not a blob
-			if (field.getMimeType()==null && field.getConstraint()!=null) {
-				passConstraint = field.getConstraint().isValueValid( value );
-			}
-			
-			if (passConstraint) {
-//				if (value instanceof Geometry) {
-//					hasGeom = true;
-//					values.put(field.getFieldName(), encodeGeometry( (Geometry)value, geomDimension ) );
-//				} else {
-					values.put(field.getFieldName(), value);
-//				}
-			} else {
-				if (MODE_STRICT) {
-					throw new IllegalArgumentException("Field "+field.getFieldName()+" did not pass constraint check");
-				}
-				log.log(Level.WARNING, "Field "+field.getFieldName()+" did not pass constraint check; Inserting Null");
-				values.put(field.getFieldName(), null);
-			}
-			
+		if (layout==null || layout.getTable()!=featTable) {
+			layout = new FeatureRowLayout(this, featTable);
+			rowLayouts.put(featTable.getTableName(), layout);
 		}
 		
-		if (!hasGeom) 
-			throw new IllegalArgumentException("Feature "+feature.getID()+" has no Geomtery defined");
-		
-		return values;
+		return layout;
 	}
 	/** Set a limit on the number of vertices permissible on a single geometry
 	 * when trying to insert new features. If the limit is exceeded then the 
@@ -1344,7 +1594,11 @@ public class GeoPackage {
 		simpleTolerance = tolerance;
 	}
 	private double simpleTolerance = 1;
-	/** Encode a JTS {@link Geometry} to standard GeoPackage geometry blob
+	/** Re-used for all geometries encoded by this GeoPackage */
+	private GeometryEncoder geomEncoder = new GeometryEncoder();
+	/** Encode a JTS {@link Geometry} to standard GeoPackage geometry blob.<p>
+	 * The encoding is done by a single {@link GeometryEncoder} held on this GeoPackage,
+	 * so this method should not be called from multiple threads at once.
 	 * 
 	 * @param geom The Geometry to encode
 	 * @param outputDimension How many dimensions to write (2 or 3). JTS does not support 4
@@ -1352,6 +1606,18 @@ public class GeoPackage {
 	 * @throws IOException
 	 */
 	public byte[] encodeGeometry(Geometry geom, int outputDimension) throws IOException {
+		return encodeGeometry(geom, outputDimension, geomEncoder);
+	}
+	/** Encode a JTS {@link Geometry} to standard GeoPackage geometry blob using the
+	 * supplied encoder, simplifying it first if required by {@link #setSimplifyOnInsertion(int, double)}.
+	 * 
+	 * @param geom The Geometry to encode
+	 * @param outputDimension How many dimensions to write (2 or 3). JTS does not support 4
+	 * @param encoder The encoder to use
+	 * @return
+	 * @throws IOException
+	 */
+	byte[] encodeGeometry(Geometry geom, int outputDimension, GeometryEncoder encoder) throws IOException {
 		if (geom==null) throw new IOException("Null Geometry passed");
 		
 		if (outputDimension < 2 || outputDimension > 3)
@@ -1368,68 +1634,7 @@ public class GeoPackage {
 			}
 		}
 		
-		ByteArrayOutputStream output = new ByteArrayOutputStream();
-
-		// 'Magic' and Version
-		output.write( "GP".getBytes() );
-		output.write( GPKG_GEOM_HEADER_VERSION );
-		
-		// Header flags
-		int endianOrder = ByteOrderValues.BIG_ENDIAN;
-		byte flags = 0;
-		if (GPKG_GEOMETRY_LITTLE_ENDIAN) {
-			flags = (byte) (flags | (1 << 0));
-			endianOrder = ByteOrderValues.LITTLE_ENDIAN;
-		}
-		if (!geom.getEnvelopeInternal().isNull()) {
-			/* JTS Envelope geoms are only ever XY, not XYZ or XYZM
-			 * therefore we only ever set the 2nd bit to 1 */
-			flags = (byte) (flags | (1 << 1));
-		}
-		if ( geom.isEmpty() ) {
-			// Set envelope bit to 0
-			flags = (byte) (flags | (1 << 0));
-			// Flag the geometry is empty
-			flags = (byte) (flags | (1 << 4));
-		}
-		if (GPKG_GEOMETRY_STANDARD==false) {
-			// ExtendedGeoPackageBinary encoding
-			flags = (byte) (flags | (1 << 5));
-		}
-		// Bits 7 and 8 are currently reserved and un-used
-		output.write(flags);
-		
-		// SRS
-		byte[] buffer = new byte[4];
-		ByteOrderValues.putInt(geom.getSRID(), buffer, endianOrder);
-		output.write(buffer);
-		
-		Envelope envelope = geom.getEnvelopeInternal();
-		/* Geom envelope - JTS only supports 2 dimensional envelopes. If Geom is
-		 * empty then we don't encode an envelope */
-		if (!envelope.isNull() && !geom.isEmpty()) {
-			buffer = new byte[8];
-			// Min X
-			ByteOrderValues.putDouble(envelope.getMinX(), buffer, endianOrder);
-			output.write(buffer);
-			// Max X
-			ByteOrderValues.putDouble(envelope.getMaxX(), buffer, endianOrder);
-			output.write(buffer);
-			// Min Y
-			ByteOrderValues.putDouble(envelope.getMinY(), buffer, endianOrder);
-			output.write(buffer);
-			// Max Y
-			ByteOrderValues.putDouble(envelope.getMaxY(), buffer, endianOrder);
-			output.write(buffer);
-		}
-		
-		// Write the geometry
-		output.write( new OGCWKBWriter( outputDimension ).write(geom) );
-		
-		buffer = output.toByteArray();
-		output.close();
-		
-		return buffer;
+		return encoder.encode(geom, outputDimension);
 	}
 	/** Update last_change field in GpkgContents for the given table name and type
 	 * to 'now'.
@@ -1437,7 +1642,7 @@ public class GeoPackage {
 	 * @param tableName
 	 * @param tableType
 	 */
-	private void updateLastChange(String tableName, String tableType) {
+	void updateLastChange(String tableName, String tableType) {
 		Map<String, Object> values = new HashMap<String, Object>();
 		values.put("last_change", DateUtil.serializeDateTime(System.currentTimeMillis(), true) );
 		String where = String.format("table_name='%s' and data_type='%s'", tableName, tableType);
@@ -0,0 +1,323 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+
+import com.augtech.geoapi.geopackage.table.GpkgContents;
+import com.augtech.geoapi.geopackage.table.GpkgExtensions;
+import com.augtech.geoapi.geopackage.table.GpkgExtensions.Extension;
+import com.augtech.geoapi.geopackage.table.GpkgGeometryColumns;
+import com.augtech.geoapi.geopackage.table.GpkgSpatialRefSys;
+import com.augtech.geoapi.geopackage.table.GpkgTileMatrix;
+import com.augtech.geoapi.geopackage.table.GpkgTileMatrixSet;
+
+/** An in-memory copy of the GeoPackage system tables that describe the user tables;
+ * gpkg_contents, gpkg_geometry_columns, gpkg_extensions, gpkg_spatial_ref_sys, gpkg_tile_matrix_set
+ * and gpkg_tile_matrix, along with the table names in SQLITE_MASTER and the record counts
+ * of user tables.<p>
+ * Each system table is read once, in full, the first time any of them is required and is then
+ * served from memory. The library invalidates the affected system table whenever it writes to
+ * one, so the next request re-reads only that table. Record counts are held once counted and are
+ * adjusted by the library's own inserts and deletes. If the database is changed outside of this
+ * library then {@link #invalidate()} should be called.
+ *
+ * @author Augmented Technologies Ltd.
+ *
+ */
+public class GpkgCatalog {
+	/** The name to invalidate the table names held from SQLITE_MASTER */
+	public static final String SQLITE_MASTER = "sqlite_master";
+	/** The system tables held and the column each is keyed on */
+	private static final String[][] CACHED_TABLES = new String[][]{
+		{GpkgContents.TABLE_NAME, "table_name"},
+		{GpkgGeometryColumns.TABLE_NAME, "table_name"},
+		{GpkgExtensions.TABLE_NAME, "table_name"},
+		{GpkgSpatialRefSys.TABLE_NAME, "srs_id"},
+		{GpkgTileMatrixSet.TABLE_NAME, "table_name"},
+		{GpkgTileMatrix.TABLE_NAME, "table_name"}
+	};
+
+	private GeoPackage geoPackage;
+	private Set<String> dbTables = null;
+	private Map<String, CachedTable> cached = new HashMap<String, CachedTable>();
+	private Map<String, List<Extension>> extensions = null;
+	private Map<String, Long> counts = new HashMap<String, Long>();
+
+	/** Create a new, empty, catalog. Use {@link GeoPackage#getCatalog()}
+	 *
+	 * @param geoPackage The GeoPackage to read the system tables from
+	 */
+	GpkgCatalog(GeoPackage geoPackage) {
+		this.geoPackage = geoPackage;
+	}
+	/** Is there a table, view or index for the supplied table name in SQLITE_MASTER?
+	 *
+	 * @param tableName The <i>case sensitive</i> table name
+	 * @return True if it exists in the database
+	 */
+	public synchronized boolean isTableInDB(String tableName) {
+		if (dbTables==null) loadTableNames();
+		return dbTables.contains(tableName);
+	}
+	/** Is the table defined in gpkg_contents?
+	 *
+	 * @param tableName The <i>case sensitive</i> table name
+	 * @return True if defined
+	 */
+	public synchronized boolean isTableInGpkg(String tableName) {
+		return getRow(GpkgContents.TABLE_NAME, tableName) > -1;
+	}
+	/** Get the data_type of a table from gpkg_contents
+	 *
+	 * @param tableName The <i>case sensitive</i> table name
+	 * @return The data_type or <code>Null</code> if the table is not in gpkg_contents
+	 */
+	public synchronized String getDataType(String tableName) {
+		int row = getRow(GpkgContents.TABLE_NAME, tableName);
+		if (row==-1) return null;
+
+		return getRecords(GpkgContents.TABLE_NAME).getFieldString(row, "data_type");
+	}
+	/** Get the names of all tables in gpkg_contents with the supplied data_type
+	 *
+	 * @param dataType One of {@link GpkgTable#TABLE_TYPE_FEATURES} or {@link GpkgTable#TABLE_TYPE_TILES}
+	 * @return A new list of table names, which is empty if none were found.
+	 */
+	public synchronized List<String> getTableNames(String dataType) {
+		ArrayList<String> ret = new ArrayList<String>();
+
+		GpkgColumnarRecords contents = getRecords(GpkgContents.TABLE_NAME);
+		if (contents==null) return ret;
+
+		int nameIdx = contents.getFieldIdx("table_name");
+		int typeIdx = contents.getFieldIdx("data_type");
+		for (int r=0; r<contents.size(); r++) {
+			if (dataType.equals( contents.getString(r, typeIdx) ))
+				ret.add( contents.getString(r, nameIdx) );
+		}
+
+		return ret;
+	}
+	/** Get all of the records held for one of the cached system tables. The records
+	 * are ordered by the table's key column (table_name or srs_id) and must not be modified.
+	 *
+	 * @param systemTable The name of the system table, such as {@link GpkgContents#TABLE_NAME}
+	 * @return The records, or <code>Null</code> if the table is not held or does not exist in
+	 * the database
+	 * @see #getRows(String, String)
+	 */
+	public synchronized GpkgColumnarRecords getRecords(String systemTable) {
+		CachedTable ct = getCached(systemTable);
+		return ct==null ? null : ct.records;
+	}
+	/** Get the range of records in {@link #getRecords(String)} for a single key value
+	 *
+	 * @param systemTable The name of the system table, such as {@link GpkgContents#TABLE_NAME}
+	 * @param key The table_name, or the srs_id for {@link GpkgSpatialRefSys#TABLE_NAME}
+	 * @return An int[] of the first record (inclusive) and last record (exclusive), or
+	 * <code>Null</code> if there are no records for the key.
+	 */
+	public synchronized int[] getRows(String systemTable, String key) {
+		CachedTable ct = getCached(systemTable);
+		return ct==null ? null : ct.rows.get(key);
+	}
+	/** Get the first record in {@link #getRecords(String)} for a single key value
+	 *
+	 * @param systemTable The name of the system table, such as {@link GpkgContents#TABLE_NAME}
+	 * @param key The table_name, or the srs_id for {@link GpkgSpatialRefSys#TABLE_NAME}
+	 * @return The record index or -1 if there are no records for the key.
+	 */
+	public synchronized int getRow(String systemTable, String key) {
+		int[] rows = getRows(systemTable, key);
+		return rows==null ? -1 : rows[0];
+	}
+	/** Get the gpkg_extensions defined for a table
+	 *
+	 * @param tableName The <i>case sensitive</i> table name, or <code>Null</code> for the
+	 * extensions that apply to the whole GeoPackage.
+	 * @return A new list of the Extensions, which may be empty, or <code>Null</code> if there
+	 * is no gpkg_extensions table.
+	 */
+	public synchronized List<Extension> getExtensions(String tableName) {
+		GpkgColumnarRecords ext = getRecords(GpkgExtensions.TABLE_NAME);
+		if (ext==null) return null;
+
+		if (extensions==null) {
+			extensions = new HashMap<String, List<Extension>>();
+			int tableIdx = ext.getFieldIdx("table_name");
+			for (int r=0; r<ext.size(); r++) {
+				Extension e = new Extension();
+				e.tableName = ext.getString(r, tableIdx);
+				e.columnName = ext.getFieldString(r, "column_name");
+				e.extensionName = ext.getFieldString(r, "extension_name");
+				e.definition = ext.getFieldString(r, "definition");
+				e.scope = ext.getFieldString(r, "scope");
+
+				List<Extension> list = extensions.get(e.tableName);
+				if (list==null) {
+					list = new ArrayList<Extension>();
+					extensions.put(e.tableName, list);
+				}
+				list.add(e);
+			}
+		}
+
+		List<Extension> list = extensions.get(tableName);
+		return list==null ? new ArrayList<Extension>() : new ArrayList<Extension>(list);
+	}
+	/** Get the record count held for a table
+	 *
+	 * @param tableName The <i>case sensitive</i> table name
+	 * @return The count, or -1 if the table has not been counted since the
+	 * count was last invalidated.
+	 */
+	public synchronized long getCount(String tableName) {
+		Long count = counts.get(tableName);
+		return count==null ? -1 : count;
+	}
+	/** Set the record count for a table after an exact count
+	 *
+	 * @param tableName The <i>case sensitive</i> table name
+	 * @param count The number of records
+	 */
+	public synchronized void setCount(String tableName, long count) {
+		counts.put(tableName, count);
+	}
+	/** Adjust the record count held for a table after records have been inserted or
+	 * deleted. Nothing is done if no count is held.
+	 *
+	 * @param tableName The <i>case sensitive</i> table name
+	 * @param delta The number of records inserted (positive) or deleted (negative)
+	 */
+	public synchronized void adjustCount(String tableName, long delta) {
+		Long count = counts.get(tableName);
+		if (count!=null) counts.put(tableName, Math.max(0, count+delta) );
+	}
+	/** Discard the record count held for a table, such as when it has been
+	 * re-created or changed with raw SQL.
+	 *
+	 * @param tableName The <i>case sensitive</i> table name
+	 */
+	public synchronized void invalidateCount(String tableName) {
+		counts.remove(tableName);
+	}
+	/** Discard the information held for a single system table so it is re-read when next
+	 * required. This should be called after every write to a cached system table.
+	 *
+	 * @param systemTable The name of the system table, or {@link #SQLITE_MASTER} after a table,
+	 * view or index has been created or dropped. Names of tables that are not held are ignored.
+	 */
+	public synchronized void invalidate(String systemTable) {
+		if (systemTable.equalsIgnoreCase(SQLITE_MASTER)) {
+			dbTables = null;
+			return;
+		}
+
+		cached.remove(systemTable);
+		if (systemTable.equals(GpkgExtensions.TABLE_NAME)) extensions = null;
+	}
+	/** Discard all information held, including the record counts, so that
+	 * everything is re-read when next required.
+	 *
+	 */
+	public synchronized void invalidate() {
+		dbTables = null;
+		cached.clear();
+		extensions = null;
+		counts.clear();
+	}
+	/** Get the information for a system table, reading all system tables
+	 * not already held in one pass if required.
+	 *
+	 * @param systemTable
+	 * @return The CachedTable or <code>Null</code> if the table is not held
+	 */
+	private CachedTable getCached(String systemTable) {
+		CachedTable ct = cached.get(systemTable);
+		if (ct!=null) return ct;
+
+		if (dbTables==null) loadTableNames();
+
+		for (String[] def : CACHED_TABLES) {
+			if (cached.containsKey(def[0])) continue;
+
+			CachedTable load = loadTable(def[0], def[1]);
+			if (load!=null) cached.put(def[0], load);
+		}
+
+		return cached.get(systemTable);
+	}
+	/** Read all table names from SQLITE_MASTER */
+	private void loadTableNames() {
+		dbTables = new HashSet<String>();
+
+		ICursor c = geoPackage.getDatabase().doRawQuery("SELECT tbl_name FROM SQLITE_MASTER");
+		if (c==null) return;
+		while (c.moveToNext()) {
+			dbTables.add( c.getString(0) );
+		}
+		c.close();
+	}
+	/** Read a whole system table ordered by its key column
+	 *
+	 * @param systemTable The table to read
+	 * @param keyColumn The column to order and index the records by
+	 * @return The CachedTable (with no records if the table is not in the database)
+	 * or <code>Null</code> if the table could not be read.
+	 */
+	private CachedTable loadTable(String systemTable, String keyColumn) {
+		CachedTable ct = new CachedTable();
+		if (!dbTables.contains(systemTable)) return ct;
+
+		GpkgTable sysTable = geoPackage.getSystemTable(systemTable);
+		String sql = "SELECT * FROM ["+systemTable+"] ORDER BY "+keyColumn;
+		if (systemTable.equals(GpkgTileMatrix.TABLE_NAME)) sql += ", zoom_level";
+
+		try {
+			ct.records = sysTable.rawQueryColumnar(geoPackage, sql);
+		} catch (Exception e) {
+			geoPackage.log.log(Level.WARNING, "Could not read "+systemTable+": "+e.getMessage());
+			return null;
+		}
+
+		// Records are ordered by key, so each key is a single range
+		int keyIdx = ct.records.getFieldIdx(keyColumn);
+		for (int r=0; r<ct.records.size(); r++) {
+			String key = ct.records.getString(r, keyIdx);
+			int[] range = ct.rows.get(key);
+			if (range==null) {
+				ct.rows.put(key, new int[]{r, r+1});
+			} else {
+				range[1] = r+1;
+			}
+		}
+
+		return ct;
+	}
+
+	/** The records for a single system table and the records for each key */
+	private static class CachedTable {
+		GpkgColumnarRecords records = null;
+		Map<String, int[]> rows = new HashMap<String, int[]>();
+	}
+}
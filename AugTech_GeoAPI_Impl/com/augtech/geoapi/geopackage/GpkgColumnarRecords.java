@@ -0,0 +1,425 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.augtech.geoapi.geopackage.GeoPackage.JavaType;
+
+/** Stores none, one or more records from a GeoPackage table by column rather
+ * than by record, as returned by {@link GpkgTable#rawQueryColumnar(GeoPackage, String)}.<p>
+ * Each column is held in a single primitive array for its {@link JavaType}; integers
+ * and booleans in a long[], floats and doubles in a double[], and Strings and byte[]'s
+ * packed in to a single char[] or byte[] with an offset for each record. No value is
+ * boxed or converted to a String when read from the cursor, and typed values are read
+ * back by column index without any parsing.<p>
+ * Null values are tracked separately and can be checked with {@link #isNull(int, int)}. The
+ * <code>getField...</code> methods by field name return the same defaults as {@link GpkgRecords}
+ * for missing records, fields or Null values so one can be swapped for the other.
+ *
+ * @author Augmented Technologies Ltd.
+ *
+ */
+public class GpkgColumnarRecords {
+	private static final int INITIAL_CAPACITY = 16;
+
+	private String[] names;
+	private GpkgField[] fields;
+	private JavaType[] types;
+	private Map<String, Integer> fieldIndex = new HashMap<String, Integer>();
+	private int numRecords = 0;
+	private int capacity = 0;
+
+	/* Storage per column. Only one array is set for each column */
+	private long[][] longs;
+	private double[][] doubles;
+	private char[][] chars;
+	private byte[][] bytes;
+	/* Start of each value in chars or bytes, with an extra entry for the end of the last */
+	private int[][] offsets;
+	private BitSet[] nulls;
+
+	/**
+	 *
+	 * @param fields The field definition for each column, in the order they are read
+	 * @param types The Java type each column is stored as
+	 */
+	public GpkgColumnarRecords(GpkgField[] fields, JavaType[] types) {
+		if (fields.length!=types.length)
+			throw new IllegalArgumentException("A type is required for each field");
+
+		int numCols = fields.length;
+		this.fields = fields;
+		this.types = types;
+		names = new String[numCols];
+		longs = new long[numCols][];
+		doubles = new double[numCols][];
+		chars = new char[numCols][];
+		bytes = new byte[numCols][];
+		offsets = new int[numCols][];
+		nulls = new BitSet[numCols];
+
+		for (int c=0; c<numCols; c++) {
+			names[c] = fields[c].getFieldName();
+			fieldIndex.put(names[c], c);
+			nulls[c] = new BitSet();
+
+			switch (types[c]) {
+			case INTEGER:
+			case BOOLEAN:
+				longs[c] = new long[0];
+				break;
+			case FLOAT:
+			case DOUBLE:
+				doubles[c] = new double[0];
+				break;
+			case STRING:
+				chars[c] = new char[64];
+				offsets[c] = new int[1];
+				break;
+			case BYTE_ARR:
+				bytes[c] = new byte[256];
+				offsets[c] = new int[1];
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown SQL data type for "+names[c]);
+			}
+		}
+	}
+	/** Read all remaining rows from a cursor in to this record set. The cursor
+	 * columns must be in the same order as the fields.
+	 *
+	 * @param cur The cursor to read from. This is not closed.
+	 * @return The number of records read
+	 */
+	public int readAll(ICursor cur) {
+		int read = 0;
+		while (cur.moveToNext()) {
+			addRecord(cur);
+			read++;
+		}
+		return read;
+	}
+	/** Add the current row of a cursor as a new record
+	 *
+	 * @param cur The cursor, positioned on the row to add
+	 */
+	public void addRecord(ICursor cur) {
+		ensureCapacity(numRecords+1);
+		int r = numRecords;
+
+		for (int c=0; c<names.length; c++) {
+			boolean isNull = cur.isNull(c);
+			if (isNull) nulls[c].set(r);
+
+			switch (types[c]) {
+			case INTEGER:
+				longs[c][r] = isNull ? 0 : cur.getLong(c);
+				break;
+			case BOOLEAN:
+				longs[c][r] = !isNull && cur.getBoolean(c) ? 1 : 0;
+				break;
+			case FLOAT:
+			case DOUBLE:
+				doubles[c][r] = isNull ? 0 : cur.getDouble(c);
+				break;
+			case STRING:
+				String s = isNull ? null : cur.getString(c);
+				int start = offsets[c][r];
+				int len = s==null ? 0 : s.length();
+				if (start+len > chars[c].length)
+					chars[c] = Arrays.copyOf(chars[c], Math.max(chars[c].length * 2, start+len));
+				if (len>0) s.getChars(0, len, chars[c], start);
+				offsets[c][r+1] = start+len;
+				break;
+			case BYTE_ARR:
+				byte[] b = isNull ? null : cur.getBlob(c);
+				start = offsets[c][r];
+				len = b==null ? 0 : b.length;
+				if (start+len > bytes[c].length)
+					bytes[c] = Arrays.copyOf(bytes[c], Math.max(bytes[c].length * 2, start+len));
+				if (len>0) System.arraycopy(b, 0, bytes[c], start, len);
+				offsets[c][r+1] = start+len;
+				break;
+			default:
+			}
+		}
+		numRecords++;
+	}
+	/** Get the number of records
+	 *
+	 * @return
+	 */
+	public int size() {
+		return numRecords;
+	}
+	/** Get the number of columns in each record
+	 *
+	 * @return
+	 */
+	public int getColumnCount() {
+		return names.length;
+	}
+	/** Get the index of a specific field.
+	 *
+	 * @param fieldName The field name
+	 * @return The index or -1 if it doesn't exist
+	 */
+	public int getFieldIdx(String fieldName) {
+		Integer idx = fieldIndex.get(fieldName);
+		return idx==null ? -1 : idx;
+	}
+	/** Get the field name of a column
+	 *
+	 * @param column The column index
+	 * @return
+	 */
+	public String getColumnName(int column) {
+		return names[column];
+	}
+	/** Get the field definition for a column. This does not hold a value.
+	 *
+	 * @param column The column index
+	 * @return
+	 */
+	public GpkgField getFieldDefinition(int column) {
+		return fields[column];
+	}
+	/** Get the type a column is stored as
+	 *
+	 * @param column The column index
+	 * @return
+	 */
+	public JavaType getJavaType(int column) {
+		return types[column];
+	}
+	/** Is the value Null?
+	 *
+	 * @param record The record index
+	 * @param column The column index
+	 * @return
+	 */
+	public boolean isNull(int record, int column) {
+		checkRecord(record);
+		return nulls[column].get(record);
+	}
+	/** Get a value as a long. Floating point values are truncated and
+	 * Strings parsed. Null values are returned as 0.
+	 *
+	 * @param record The record index
+	 * @param column The column index
+	 * @return
+	 */
+	public long getLong(int record, int column) {
+		checkRecord(record);
+		if (longs[column]!=null) return longs[column][record];
+		if (doubles[column]!=null) return (long) doubles[column][record];
+		if (nulls[column].get(record)) return 0;
+		return Long.parseLong( getString(record, column) );
+	}
+	/** Get a value as an int.
+	 *
+	 * @param record The record index
+	 * @param column The column index
+	 * @return
+	 * @see #getLong(int, int)
+	 */
+	public int getInt(int record, int column) {
+		return (int) getLong(record, column);
+	}
+	/** Get a value as a double. Strings are parsed and Null values
+	 * are returned as 0.
+	 *
+	 * @param record The record index
+	 * @param column The column index
+	 * @return
+	 */
+	public double getDouble(int record, int column) {
+		checkRecord(record);
+		if (doubles[column]!=null) return doubles[column][record];
+		if (longs[column]!=null) return longs[column][record];
+		if (nulls[column].get(record)) return 0;
+		return Double.parseDouble( getString(record, column) );
+	}
+	/** Get a value as a float.
+	 *
+	 * @param record The record index
+	 * @param column The column index
+	 * @return
+	 * @see #getDouble(int, int)
+	 */
+	public float getFloat(int record, int column) {
+		return (float) getDouble(record, column);
+	}
+	/** Get a value as a boolean. Numbers are True if not 0 and Strings
+	 * if '1' or 'true'.
+	 *
+	 * @param record The record index
+	 * @param column The column index
+	 * @return
+	 */
+	public boolean getBoolean(int record, int column) {
+		checkRecord(record);
+		if (longs[column]!=null) return longs[column][record]!=0;
+		if (doubles[column]!=null) return doubles[column][record]!=0;
+		String s = getString(record, column);
+		return s!=null && (s.equals("1") || Boolean.parseBoolean(s));
+	}
+	/** Get a value as a String. Numbers are converted to a String.
+	 *
+	 * @param record The record index
+	 * @param column The column index
+	 * @return The value or <code>Null</code> if Null
+	 */
+	public String getString(int record, int column) {
+		checkRecord(record);
+		if (nulls[column].get(record)) return null;
+
+		switch (types[column]) {
+		case STRING:
+			int start = offsets[column][record];
+			return new String(chars[column], start, offsets[column][record+1]-start);
+		case BYTE_ARR:
+			return new String( getBlob(record, column) );
+		case BOOLEAN:
+			return String.valueOf( longs[column][record]!=0 );
+		case INTEGER:
+			return String.valueOf( longs[column][record] );
+		default:
+			return String.valueOf( doubles[column][record] );
+		}
+	}
+	/** Get a blob value
+	 *
+	 * @param record The record index
+	 * @param column The column index
+	 * @return A new byte[] or <code>Null</code> if Null or not a blob column
+	 */
+	public byte[] getBlob(int record, int column) {
+		checkRecord(record);
+		if (bytes[column]==null || nulls[column].get(record)) return null;
+
+		int start = offsets[column][record];
+		return Arrays.copyOfRange(bytes[column], start, offsets[column][record+1]);
+	}
+	/** Get a value as the Object type for the column, as would be stored
+	 * in {@link GpkgRecords}
+	 *
+	 * @param record The record index
+	 * @param column The column index
+	 * @return The value or <code>Null</code>
+	 */
+	public Object getValue(int record, int column) {
+		checkRecord(record);
+		if (nulls[column].get(record)) return null;
+
+		switch (types[column]) {
+		case INTEGER:
+			long l = longs[column][record];
+			if (l>=Integer.MIN_VALUE && l<=Integer.MAX_VALUE) return (int) l;
+			return l;
+		case BOOLEAN:
+			return longs[column][record]!=0;
+		case FLOAT:
+			return (float) doubles[column][record];
+		case DOUBLE:
+			return doubles[column][record];
+		case STRING:
+			return getString(record, column);
+		default:
+			return getBlob(record, column);
+		}
+	}
+	/** Get a records field value as an int
+	 *
+	 * @param record The record index
+	 * @param fieldName The field name
+	 * @return The value or -1 if no record or field with the supplied name exists, or it is Null
+	 */
+	public int getFieldInt(int record, String fieldName) {
+		int c = getFieldIdx(fieldName);
+		if (!hasValue(record, c)) return -1;
+		return getInt(record, c);
+	}
+	/** Get a records field value as a double
+	 *
+	 * @param record The record index
+	 * @param fieldName The field name
+	 * @return The value or -1 if no record or field with the supplied name exists, or it is Null
+	 */
+	public double getFieldDouble(int record, String fieldName) {
+		int c = getFieldIdx(fieldName);
+		if (!hasValue(record, c)) return -1d;
+		return getDouble(record, c);
+	}
+	/** Get a records field value as a String
+	 *
+	 * @param record The record index
+	 * @param fieldName The field name
+	 * @return The value or an empty string if no record or field with the supplied name exists, or it is Null
+	 */
+	public String getFieldString(int record, String fieldName) {
+		int c = getFieldIdx(fieldName);
+		if (!hasValue(record, c)) return "";
+		return getString(record, c);
+	}
+	/** Get a records blob field (as byte[])
+	 *
+	 * @param record The record index
+	 * @param fieldName The field name
+	 * @return A byte[] or null if no record or field with the supplied name exists
+	 */
+	public byte[] getFieldBlob(int record, String fieldName) {
+		int c = getFieldIdx(fieldName);
+		if (!hasValue(record, c)) return null;
+		return getBlob(record, c);
+	}
+	/** Get a records field value as a boolean
+	 *
+	 * @param record The record index
+	 * @param fieldName The field name
+	 * @return The value or false if no record or field with the supplied name exists
+	 */
+	public boolean getFieldBool(int record, String fieldName) {
+		int c = getFieldIdx(fieldName);
+		if (!hasValue(record, c)) return false;
+		return getBoolean(record, c);
+	}
+
+	private boolean hasValue(int record, int column) {
+		return column>-1 && record>-1 && record<numRecords && !nulls[column].get(record);
+	}
+
+	private void checkRecord(int record) {
+		if (record<0 || record>=numRecords)
+			throw new IndexOutOfBoundsException("Record "+record+" does not exist");
+	}
+	/** Grow the per-record arrays to hold at least the required number of records */
+	private void ensureCapacity(int required) {
+		if (required <= capacity) return;
+
+		int newCap = Math.max(INITIAL_CAPACITY, Math.max(capacity * 2, required));
+		for (int c=0; c<names.length; c++) {
+			if (longs[c]!=null) longs[c] = Arrays.copyOf(longs[c], newCap);
+			if (doubles[c]!=null) doubles[c] = Arrays.copyOf(doubles[c], newCap);
+			if (offsets[c]!=null) offsets[c] = Arrays.copyOf(offsets[c], newCap+1);
+		}
+		capacity = newCap;
+	}
+}
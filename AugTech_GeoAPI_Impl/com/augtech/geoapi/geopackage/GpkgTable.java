@@ -31,7 +31,6 @@ import com.augtech.geoapi.geopackage.table.FeatureField;
 import com.augtech.geoapi.geopackage.table.FeaturesTable;
 import com.augtech.geoapi.geopackage.table.GpkgContents;
 import com.augtech.geoapi.geopackage.table.GpkgDataColumnConstraint;
-import com.augtech.geoapi.geopackage.table.GpkgExtensions;
 import com.augtech.geoapi.geopackage.table.GpkgExtensions.Extension;
 import com.augtech.geoapi.geopackage.table.TilesTable;
 import com.augtech.geoapi.referncing.CoordinateReferenceSystemImpl;
@@ -140,6 +139,8 @@ public abstract class GpkgTable {
 		sb.append(");");
 		
 		geoPackage.getDatabase().execSQL( sb.toString() );
+		geoPackage.getCatalog().invalidate(GpkgCatalog.SQLITE_MASTER);
+		geoPackage.getCatalog().invalidate(tableName);
 		
 		return true;
 	}
@@ -190,24 +191,24 @@ public abstract class GpkgTable {
 		// Table details and bounds from GpkgContents
 		if (hasContentInfo==false) {
 			
-			GpkgRecords contents = geoPackage.getSystemTable(GpkgContents.TABLE_NAME)
-												.query(geoPackage, "table_name='"+tableName+"'");
-			if (contents==null || contents.size()==0) 
+			GpkgColumnarRecords contents = geoPackage.getCatalog().getRecords(GpkgContents.TABLE_NAME);
+			int row = geoPackage.getCatalog().getRow(GpkgContents.TABLE_NAME, tableName);
+			if (row==-1) 
 				throw new Exception("Table "+tableName+" not defined in "+GpkgContents.TABLE_NAME);
 			
-			this.identifier = contents.getFieldString(0, "identifier");
-			this.description = contents.getFieldString(0, "description");
-			String lc = contents.getFieldString(0, "last_change");
+			this.identifier = contents.getFieldString(row, "identifier");
+			this.description = contents.getFieldString(row, "description");
+			String lc = contents.getFieldString(row, "last_change");
 			if (!lc.equals("")) {
-				this.lastChange = DateUtil.deserializeDateTime( contents.getFieldString(0, "last_change") );
+				this.lastChange = DateUtil.deserializeDateTime( lc );
 			}
 			
 			bbox = new BoundingBoxImpl(
-						contents.getFieldDouble(0,"min_x"),
-						contents.getFieldDouble(0,"max_x"),
-						contents.getFieldDouble(0,"min_y"),
-						contents.getFieldDouble(0,"max_y"),
-						new CoordinateReferenceSystemImpl(""+contents.getFieldInt(0, "srs_id"))
+						contents.getFieldDouble(row,"min_x"),
+						contents.getFieldDouble(row,"max_x"),
+						contents.getFieldDouble(row,"min_y"),
+						contents.getFieldDouble(row,"max_y"),
+						new CoordinateReferenceSystemImpl(""+contents.getFieldInt(row, "srs_id"))
 						);
 			hasContentInfo = true;
 		}
@@ -217,36 +218,14 @@ public abstract class GpkgTable {
 	}
 	/** Get any GpkgExtension information for this table.
 	 * 
-	 * @return An array of Extension's relating to this table, or <code>Null</code>
-	 * if there isn't any
+	 * @return A List of Extension's relating to this table, or <code>Null</code>
+	 * if the GeoPackage has no gpkg_extensions table
 	 */
 	public List<Extension> getExtensionInfo(GeoPackage geoPackage) {
 		
-		if (gpkgExtensions==null && !hasExtensionInfo) {
-			GpkgTable extTable = geoPackage.getSystemTable(GpkgExtensions.TABLE_NAME);
-			if (!extTable.isTableInDB(geoPackage)) {
-				hasExtensionInfo=true;
-				return null;
-			}
-			
-			ICursor exCursor = extTable.query(geoPackage, null, "table_name='"+tableName+"'");
-
-
-			if (exCursor!=null) {
-				this.gpkgExtensions = new ArrayList<Extension>();
-				while (exCursor.moveToNext()) {
-					Extension ext = new Extension();
-					ext.tableName = tableName;
-					ext.columnName = exCursor.getString( exCursor.getColumnIndex("column_name") );
-					ext.extensionName = exCursor.getString( exCursor.getColumnIndex("extension_name") );
-					ext.definition = exCursor.getString( exCursor.getColumnIndex("definition") );
-					ext.scope = exCursor.getString( exCursor.getColumnIndex("scope") );
-					
-					this.gpkgExtensions.add( ext );
-				}
-				exCursor.close();
-			}
-			hasExtensionInfo = this.gpkgExtensions.size() > 0;
+		if (!hasExtensionInfo) {
+			this.gpkgExtensions = geoPackage.getCatalog().getExtensions(tableName);
+			hasExtensionInfo = true;
 		}
 
 		return this.gpkgExtensions;
@@ -274,15 +253,24 @@ public abstract class GpkgTable {
 	public String getTableType() {
 		return tableType;
 	}
-	/** Get the number of records within this table. Note that the table
-	 * is queried every time as records could be inserted or deleted by other
-	 * methods.
+	/** Get the number of records within this table.<p>
+	 * User tables are only counted the first time, after which the count held by the
+	 * {@link GpkgCatalog} is returned. The held count is adjusted by inserts and deletes made
+	 * through this library. System tables are queried every time.
 	 * 
 	 * @param geoPackage
 	 * @return The count of records or -1 if the table does not exist.
+	 * @see #getEstimatedCount(GeoPackage)
 	 */
 	public int getCount(GeoPackage geoPackage) {
 		if (isTableInDB(geoPackage)==false) return -1;
+		
+		GpkgCatalog catalog = geoPackage.getCatalog();
+		boolean holdCount = !tableType.equals(TABLE_TYPE_SYSTEM);
+		if (holdCount) {
+			long held = catalog.getCount(tableName);
+			if (held>-1) return (int)held;
+		}
 
 		// Count on primary key is quicker than * on large tables
 		String pk = "*";
@@ -302,6 +290,52 @@ public abstract class GpkgTable {
 		
 		int count = c.getInt(0);
 		c.close();
+		
+		if (holdCount) catalog.setCount(tableName, count);
+		return count;
+	}
+	/** Get an estimate of the number of records within this table without counting them.<p>
+	 * If the table has been counted the count held by the {@link GpkgCatalog} is returned. Otherwise
+	 * the number of rows recorded in sqlite_stat1 by the last ANALYZE is used, or failing that the 
+	 * largest rowid. Neither of these scan the table, but they will differ from the actual count if 
+	 * the table has changed since the ANALYZE, or records have been deleted.
+	 * 
+	 * @param geoPackage
+	 * @return The estimated count of records or -1 if the table does not exist.
+	 * @see #getCount(GeoPackage)
+	 */
+	public long getEstimatedCount(GeoPackage geoPackage) {
+		if (isTableInDB(geoPackage)==false) return -1;
+		
+		GpkgCatalog catalog = geoPackage.getCatalog();
+		long count = catalog.getCount(tableName);
+		if (count>-1) return count;
+		
+		ICursor c = null;
+		
+		// The first value of each stat is the number of rows in the table
+		if (catalog.isTableInDB("sqlite_stat1")) {
+			c = geoPackage.getDatabase().doRawQuery("SELECT stat FROM sqlite_stat1 WHERE tbl='"+tableName+"'");
+			if (c!=null) {
+				if (c.moveToFirst() && !c.isNull(0)) {
+					String stat = c.getString(0).trim();
+					int end = stat.indexOf(' ');
+					try {
+						count = Long.parseLong( end==-1 ? stat : stat.substring(0, end) );
+					} catch (NumberFormatException ignore) {}
+				}
+				c.close();
+			}
+			if (count>-1) return count;
+		}
+		
+		// The rowid is the primary key on tables with an INTEGER PRIMARY KEY, so is indexed
+		c = geoPackage.getDatabase().doRawQuery("SELECT MAX(rowid) FROM ["+tableName+"]");
+		if (c!=null) {
+			if (c.moveToFirst()) count = c.isNull(0) ? 0 : c.getLong(0);
+			c.close();
+		}
+		
 		return count;
 	}
 	/** Insert a set of record values into this table as a batch
@@ -311,7 +345,13 @@ public abstract class GpkgTable {
 	 * @return The number of records successfully inserted
 	 */
 	public long insert(GeoPackage geoPackage, List<Map<String, Object>> allValues) {
-		return geoPackage.getDatabase().doInsert("["+tableName+"]", allValues);
+		long ret = geoPackage.getDatabase().doInsert("["+tableName+"]", allValues);
+		if (tableType.equals(TABLE_TYPE_SYSTEM)) {
+			geoPackage.getCatalog().invalidate(tableName);
+		} else if (ret>0) {
+			geoPackage.getCatalog().adjustCount(tableName, ret);
+		}
+		return ret;
 	}
 	/** Insert a record into the table
 	 * 
@@ -320,7 +360,13 @@ public abstract class GpkgTable {
 	 * @return The row ID of the newly inserted row
 	 */
 	public long insert(GeoPackage geoPackage, Map<String, Object> values) {
-		return geoPackage.getDatabase().doInsert("["+tableName+"]", values);
+		long ret = geoPackage.getDatabase().doInsert("["+tableName+"]", values);
+		if (tableType.equals(TABLE_TYPE_SYSTEM)) {
+			geoPackage.getCatalog().invalidate(tableName);
+		} else if (ret>0) {
+			geoPackage.getCatalog().adjustCount(tableName, 1);
+		}
+		return ret;
 	}
 
 	/** Issue a raw query on this table for a {@linkplain ICursor}
@@ -411,26 +457,7 @@ public abstract class GpkgTable {
 				if (jType==null || jType==JavaType.UNKNOWN) 
 					throw new IllegalArgumentException("Unknown SQL data type '"+fieldType+"'");
 				
-				switch (jType) {
-				case INTEGER:
-					thisRec.add( cur.getInt(idx) );
-					break;
-				case STRING:
-					thisRec.add( cur.getString(idx) );
-					break;
-				case BOOLEAN:
-					thisRec.add( cur.getBoolean(idx) );
-					break;
-				case FLOAT:
-					thisRec.add( cur.getFloat(idx) );
-					break;
-				case DOUBLE:
-					thisRec.add( cur.getDouble(idx) );
-					break;
-				case BYTE_ARR:
-					thisRec.add( cur.getBlob(idx) );
-					break;
-				}
+				thisRec.add( readValue(cur, idx, jType) );
 				
 			} // Next column
 			
@@ -442,24 +469,101 @@ public abstract class GpkgTable {
 
 		return records;
 	}
+	/** Get the records from this table matching the where clause as a
+	 * {@link GpkgColumnarRecords}.
+	 * 
+	 * @param geoPackage The GeoPackage to query
+	 * @param strWhere A valid where clause, without the 'where'. If <code>Null</code>
+	 * all records will be returned (which is not advised!)
+	 * @return The matching records
+	 * @throws Exception
+	 * @see #rawQueryColumnar(GeoPackage, String)
+	 */
+	public GpkgColumnarRecords queryColumnar(GeoPackage geoPackage, String strWhere) throws Exception {
+		
+		String stmt = "SELECT * FROM ["+tableName+"]";
+		if (strWhere!=null && !strWhere.equals("")) stmt+=" WHERE "+strWhere;
+		
+		return rawQueryColumnar(geoPackage, stmt);
+	}
+	/** Get the records from this table using the full SQL statement as a {@link GpkgColumnarRecords},
+	 * which holds each column in a primitive array rather than a List of Objects per record 
+	 * as {@link #rawQuery(GeoPackage, String)} does.<p>
+	 * The type of each column is taken from this table's field definitions. Any column that is not
+	 * a field on this table (such as an expression) is stored as a String.
+	 * 
+	 * @param geoPackage The GeoPackage to query
+	 * @param sqlStmt A valid SQL statement. (No checks are performed on this)
+	 * @return The records
+	 * @throws Exception 
+	 */
+	public GpkgColumnarRecords rawQueryColumnar(GeoPackage geoPackage, String sqlStmt) throws Exception {
+
+		// Populate field info (only applicable for non-system tables)
+		getContents(geoPackage);
+
+		ICursor cur = geoPackage.getDatabase().doRawQuery(sqlStmt);
+		
+		String[] colNames = cur.getColumnNames();
+		GpkgField[] colFields = new GpkgField[colNames.length];
+		JavaType[] colTypes = new JavaType[colNames.length];
+		
+		for (int i=0; i<colNames.length; i++) {
+			GpkgField gf = fields.get(colNames[i]);
+			colFields[i] = gf==null ? new GpkgField(colNames[i], "TEXT") : gf.clone();
+			
+			JavaType jType = geoPackage.sqlTypeMap.get( colFields[i].getFieldType().toLowerCase() );
+			if (jType==null || jType==JavaType.UNKNOWN) {
+				cur.close();
+				throw new IllegalArgumentException("Unknown SQL data type '"+colFields[i].getFieldType()+"'");
+			}
+			colTypes[i] = jType;
+		}
+		
+		GpkgColumnarRecords records = new GpkgColumnarRecords(colFields, colTypes);
+		try {
+			records.readAll(cur);
+		} finally {
+			cur.close();
+		}
+		
+		return records;
+	}
+	/** Read a single column value from the current row of a cursor as the
+	 * Java object matching the supplied {@link JavaType}
+	 *
+	 * @param cur The cursor, positioned on the row to read
+	 * @param idx The zero-based column index
+	 * @param jType The mapped Java type of the column
+	 * @return The value, or <code>Null</code> if the type is not known
+	 */
+	static Object readValue(ICursor cur, int idx, JavaType jType) {
+		switch (jType) {
+		case INTEGER:
+			return cur.getInt(idx);
+		case STRING:
+			return cur.getString(idx);
+		case BOOLEAN:
+			return cur.getBoolean(idx);
+		case FLOAT:
+			return cur.getFloat(idx);
+		case DOUBLE:
+			return cur.getDouble(idx);
+		case BYTE_ARR:
+			return cur.getBlob(idx);
+		default:
+			return null;
+		}
+	}
 	/** Does this table exist in gpkg_contents?
 	 * 
 	 * @param geoPackage The GeoPackage to look in
 	 * @return True if table exists in gpkg_contents
 	 */
 	public boolean isTableInGpkg(GeoPackage geoPackage) {
-		boolean tExists = false;
 		if (this.tableType.equals(TABLE_TYPE_SYSTEM)) return false;
 		
-		ICursor c = geoPackage.getDatabase().doQuery(
-				"gpkg_contents", 
-				new String[]{"table_name"},
-				"table_name='"+tableName+"'");
-		
-		tExists =  c.moveToFirst();
-		c.close();
-		
-		return tExists;
+		return geoPackage.getCatalog().isTableInGpkg(tableName);
 	}
 	/** Check that a table exists in the GeoPackage database. This is different to 
 	 * checking whether the table definition exists in the gpkg_contents table.
@@ -469,12 +573,7 @@ public abstract class GpkgTable {
 	 * @see #isTableInGpkg(String, String)
 	 */
 	public boolean isTableInDB(GeoPackage geoPackage) {
-		// Does the table already exist?
-		boolean tExists = false;
-		ICursor c = geoPackage.getDatabase().doQuery("SQLITE_MASTER", new String[]{"tbl_name"},"tbl_name='"+tableName+"'");
-		if( c.moveToFirst() ) tExists = c.getString(0).equals(tableName);
-		c.close();
-		return tExists;
+		return geoPackage.getCatalog().isTableInDB(tableName);
 	}
 	/** Get the internal GeoPackage table name
 	 * 
@@ -534,7 +633,13 @@ public abstract class GpkgTable {
 	 * @return The number of records updated.
 	 */
 	public int update(GeoPackage geoPackage, Map<String, Object> values, String strWhere) {
-		return geoPackage.getDatabase().doUpdate("["+tableName+"]", values, strWhere);
+		int ret = geoPackage.getDatabase().doUpdate("["+tableName+"]", values, strWhere);
+		if (tableType.equals(TABLE_TYPE_SYSTEM)) {
+			geoPackage.getCatalog().invalidate(tableName);
+		} else if (tableType.equals(TABLE_TYPE_TILES)) {
+			geoPackage.getTileCache().invalidate(tableName);
+		}
+		return ret;
 	}
 	/** Delete a record from this table
 	 * 
@@ -543,7 +648,17 @@ public abstract class GpkgTable {
 	 * @return The number of rows affected if a where clause is passed in, 0 otherwise
 	 */
 	public int delete(GeoPackage geoPackage, String strWhere) {
-		return geoPackage.getDatabase().doDelete("["+tableName+"]", strWhere);
+		int ret = geoPackage.getDatabase().doDelete("["+tableName+"]", strWhere);
+		if (tableType.equals(TABLE_TYPE_TILES)) geoPackage.getTileCache().invalidate(tableName);
+		
+		if (tableType.equals(TABLE_TYPE_SYSTEM)) {
+			geoPackage.getCatalog().invalidate(tableName);
+		} else if (strWhere==null) {
+			geoPackage.getCatalog().setCount(tableName, 0);
+		} else {
+			geoPackage.getCatalog().adjustCount(tableName, -ret);
+		}
+		return ret;
 	}
 	/** Get the Identifier from gpkg_contents
 	 * This will not be populated on non-system tables until 
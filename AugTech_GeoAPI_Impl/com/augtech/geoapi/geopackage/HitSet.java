@@ -0,0 +1,144 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage;
+
+import java.util.BitSet;
+
+/** A set of record id's held in a temporary table so that they can be joined
+ * against in a query, rather than listed in a (potentially huge) 'IN (1,2,3...)' clause.<p>
+ * Id's are buffered as they are added and written to the table within a single savepoint
+ * on each call to {@link #flush()}. The table is only visible to this connection and
+ * is dropped on {@link #drop()}.<p>
+ * Table names are re-used once a set has been dropped, so the statements on them
+ * are re-used from the database's statement cache rather than filling it.
+ *
+ * @author Augmented Technologies Ltd.
+ *
+ */
+public class HitSet {
+	/* Table numbers in use by sets that have not been dropped */
+	private static BitSet inUse = new BitSet();
+
+	private ISQLDatabase db;
+	private int tableNumber;
+	private String tableName;
+	private int[] buffer = new int[256];
+	private int buffered = 0;
+	private int size = 0;
+	private boolean created = false;
+	private boolean dropped = false;
+
+	/** Create a new HitSet. The temporary table is not created until
+	 * the first id's are flushed.
+	 *
+	 * @param db The database to create the temporary table on
+	 */
+	public HitSet(ISQLDatabase db) {
+		this.db = db;
+		synchronized (inUse) {
+			tableNumber = inUse.nextClearBit(0);
+			inUse.set(tableNumber);
+		}
+		this.tableName = "gpkg_hits_"+tableNumber;
+	}
+	/** Add an id to the set. The id is not written to the table
+	 * until {@link #flush()} is called.
+	 *
+	 * @param id
+	 */
+	public void add(int id) {
+		if (buffered==buffer.length) {
+			int[] tmp = new int[buffer.length*2];
+			System.arraycopy(buffer, 0, tmp, 0, buffered);
+			buffer = tmp;
+		}
+		buffer[buffered++] = id;
+		size++;
+	}
+	/** Write any buffered id's to the temporary table within a savepoint. Outside of
+	 * a transaction this commits the id's as a single transaction, otherwise they become 
+	 * part of the transaction already open (such as by a {@link BulkWriter}), which
+	 * is left open.
+	 *
+	 */
+	public void flush() {
+		if (dropped) throw new IllegalStateException("HitSet has been dropped");
+		if (buffered==0) return;
+
+		if (!created) {
+			db.execSQL("CREATE TEMP TABLE IF NOT EXISTS ["+tableName+"] (id INTEGER PRIMARY KEY)");
+			created = true;
+		}
+
+		/* beginTransaction() would commit any transaction the caller already has
+		 * open, whereas a savepoint nests within it */
+		boolean success = false;
+		db.execSQL("SAVEPOINT gpkg_hits");
+		try {
+			ISQLStatement insert = db.prepare("INSERT OR IGNORE INTO temp.["+tableName+"] VALUES (?)");
+			for (int i=0; i<buffered; i++) {
+				insert.bindInt(1, buffer[i]);
+				insert.executeUpdate();
+			}
+			insert.close();
+			success = true;
+		} finally {
+			if (!success) db.execSQL("ROLLBACK TO gpkg_hits");
+			db.execSQL("RELEASE gpkg_hits");
+		}
+		buffered = 0;
+	}
+	/** Get the total number of id's added to this set
+	 *
+	 * @return
+	 */
+	public int size() {
+		return size;
+	}
+	/** Get the name of the temporary table
+	 *
+	 * @return
+	 */
+	public String getTableName() {
+		return tableName;
+	}
+	/** Get a sub-query selecting all id's in this set, suitable for use
+	 * in an 'IN (...)' clause. Any buffered id's are flushed first.
+	 *
+	 * @return
+	 */
+	public String getSelect() {
+		flush();
+		return "SELECT id FROM temp.["+tableName+"]";
+	}
+	/** Drop the temporary table and clear all id's. The set cannot be
+	 * used once dropped.
+	 *
+	 */
+	public void drop() {
+		if (dropped) return;
+		
+		if (created) db.execSQL("DROP TABLE IF EXISTS temp.["+tableName+"]");
+		created = false;
+		buffered = 0;
+		size = 0;
+		
+		synchronized (inUse) {
+			inUse.clear(tableNumber);
+		}
+		dropped = true;
+	}
+}
@@ -66,6 +66,20 @@ public interface ICursor {
 	 * @return the value of that column as an int.
 	 */
 	public int getInt(int columnIndex);
+	/** Returns the value of the requested column as a long. 
+	 * The result and whether this method throws an exception when the column value is null
+	 * or the column type is not an integral type is implementation-defined.
+	 * 
+	 * @param columnIndex the zero-based index of the target column.
+	 * @return the value of that column as a long.
+	 */
+	public long getLong(int columnIndex);
+	/** Returns true if the value in the requested column is null.
+	 * 
+	 * @param columnIndex the zero-based index of the target column.
+	 * @return whether the column value is null.
+	 */
+	public boolean isNull(int columnIndex);
 
 	/** Get the number of columns in this cursor
 	 * 
@@ -54,6 +54,15 @@ public interface ISQLDatabase {
 	 * @return A ICursor of the results
 	 */
 	public ICursor doRawQuery(String sql);
+	/** Get a pre-compiled statement for a SQL statement containing '?' bind
+	 * parameters. Implementations should cache compiled statements so that
+	 * repeated calls with the same SQL do not re-compile it.<p>
+	 * The statement must be closed once finished with.
+	 * 
+	 * @param sql The SQL statement to compile
+	 * @return A ISQLStatement with no values bound
+	 */
+	public ISQLStatement prepare(String sql);
 	/** Execute a raw SQL statement that does not return a result
 	 * 
 	 * @param sql The SQL statement to execute
@@ -99,8 +108,20 @@ public interface ISQLDatabase {
 	 */
 	public long doInsert(String table, Map<String, Object> values);
 	
+	/** Begin a transaction. All subsequent statements on this database are
+	 * executed within the transaction until {@link #endTransaction(boolean)} is called.
+	 * 
+	 */
+	public void beginTransaction();
+	/** End the current transaction
+	 * 
+	 * @param successful If True the transaction is committed, otherwise it is rolled back
+	 */
+	public void endTransaction(boolean successful);
+	
 	/** Does the underlying SQLite implementation have R*Tree indexing
-	 * available? 
+	 * available? Implementations should only return True if the ST_* functions
+	 * used by the spatial index triggers are also available on the connection.
 	 * 
 	 * @return
 	 * @see http://www.sqlite.org/rtree.html
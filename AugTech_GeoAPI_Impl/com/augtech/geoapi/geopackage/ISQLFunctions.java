@@ -0,0 +1,39 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/** Registers the SQL functions required by the spatial index triggers 
+ * (ST_MinX, ST_MaxX, ST_MinY, ST_MaxY and ST_IsEmpty) on a JDBC connection.<p>
+ * Functions are specific to the JDBC driver, so an implementation is passed to
+ * {@link JSqlLiteDatabase} rather than being part of this library. The jdbc source folder
+ * has one for the Xerial sqlite-jdbc driver.
+ *
+ * @author Augmented Technologies Ltd.
+ *
+ */
+public interface ISQLFunctions {
+
+	/** Register the functions on a connection. This is called each
+	 * time a new connection is opened.
+	 *
+	 * @param connection The connection to register the functions on
+	 * @throws SQLException If the functions could not be registered
+	 */
+	public void register(Connection connection) throws SQLException;
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage;
+
+/** An interface to a pre-compiled SQL statement with bind parameters, as
+ * returned by {@link ISQLDatabase#prepare(String)}.<p>
+ * The SQL is only compiled once by the underlying SQLite implementation, therefore
+ * repeated queries (such as paging through a table) only need to bind new values
+ * and step the statement.<p>
+ * Bind parameter indexes are 1-based, as per the SQLite API. Bound values are retained
+ * between executions until they are replaced or {@link #clearBindings()} is called.
+ *
+ * @author Augmented Technologies Ltd.
+ *
+ */
+public interface ISQLStatement {
+
+	/** Bind an int value to a parameter
+	 *
+	 * @param index The 1-based index of the parameter
+	 * @param value The value to bind
+	 */
+	public void bindInt(int index, int value);
+	/** Bind a long value to a parameter
+	 *
+	 * @param index The 1-based index of the parameter
+	 * @param value The value to bind
+	 */
+	public void bindLong(int index, long value);
+	/** Bind a double value to a parameter
+	 *
+	 * @param index The 1-based index of the parameter
+	 * @param value The value to bind
+	 */
+	public void bindDouble(int index, double value);
+	/** Bind a String value to a parameter
+	 *
+	 * @param index The 1-based index of the parameter
+	 * @param value The value to bind
+	 */
+	public void bindString(int index, String value);
+	/** Bind a byte[] value to a parameter
+	 *
+	 * @param index The 1-based index of the parameter
+	 * @param value The value to bind
+	 */
+	public void bindBlob(int index, byte[] value);
+	/** Bind a NULL value to a parameter
+	 *
+	 * @param index The 1-based index of the parameter
+	 */
+	public void bindNull(int index);
+	/** Clear all bound values on this statement
+	 *
+	 */
+	public void clearBindings();
+	/** Execute this statement as a query with the currently bound values.<p>
+	 * The returned cursor is only valid until this statement is next executed
+	 * or closed, so should be closed once read.
+	 *
+	 * @return An ICursor of the results
+	 * @throws IllegalStateException If the query fails
+	 */
+	public ICursor executeQuery();
+	/** Execute this statement as an INSERT with the currently bound values
+	 *
+	 * @return The row ID of the inserted row, or -1 if it failed
+	 */
+	public long executeInsert();
+	/** Execute this statement as an UPDATE or DELETE with the currently bound values
+	 *
+	 * @return The number of rows affected
+	 */
+	public int executeUpdate();
+	/** Release this statement. Implementations may return the statement to a
+	 * cache held by the {@link ISQLDatabase} so it can be re-used by a subsequent
+	 * call to {@link ISQLDatabase#prepare(String)} with the same SQL, therefore
+	 * the statement must not be used once closed.
+	 *
+	 */
+	public void close();
+}
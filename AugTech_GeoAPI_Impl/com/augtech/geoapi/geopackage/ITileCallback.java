@@ -0,0 +1,37 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage;
+
+/** Receives tiles, one at a time, as they are read from a tiles table by
+ * {@link GeoPackage#getTiles(String, org.opengis.geometry.BoundingBox, int, boolean, ITileCallback)}.<p>
+ * Tiles are passed straight from the query without any feature or geometry being
+ * constructed, so a renderer can draw each tile as it arrives.
+ *
+ * @author Augmented Technologies Ltd.
+ *
+ */
+public interface ITileCallback {
+
+	/** Called for each tile read
+	 *
+	 * @param zoom The zoom level
+	 * @param tileColumn The column ID (x)
+	 * @param tileRow The row ID (y)
+	 * @param tile The tile image data
+	 * @return True to continue reading tiles, False to stop
+	 */
+	public boolean onTile(int zoom, int tileColumn, int tileRow, byte[] tile);
+}
@@ -27,14 +27,34 @@ public class JSqlLiteDatabase implements com.augtech.geoapi.geopackage.ISQLDatab
 	File dbFile = null;
 	Connection connection = null;
 	static final boolean ONE_BASED = true;
-	/**
+	/** The maximum number of idle prepared statements retained for re-use */
+	static final int STATEMENT_CACHE_SIZE = 20;
+	JSqlLiteStatement.Cache statementCache = new JSqlLiteStatement.Cache(STATEMENT_CACHE_SIZE);
+	/* Null until tested on the current connection */
+	Boolean rTreeEnabled = null;
+	/* Registers the functions used by the spatial index triggers */
+	private ISQLFunctions functions = null;
+	/** Create a JSqlLiteDatabase without the functions required by the spatial index
+	 * triggers, so spatial indexes are not used.
 	 * 
 	 * @param dbFile
 	 * @throws ClassNotFoundException
 	 */
 	public JSqlLiteDatabase(File dbFile) {
+		this(dbFile, null);
+	}
+	/** Create a JSqlLiteDatabase that registers the functions required by the spatial
+	 * index triggers on each connection, such as {@code new JSqlLiteFunctions()} from the
+	 * jdbc source folder.
+	 * 
+	 * @param dbFile
+	 * @param functions The functions to register, or <code>Null</code> if spatial indexes
+	 * should not be used.
+	 */
+	public JSqlLiteDatabase(File dbFile, ISQLFunctions functions) {
 		
 		this.dbFile = dbFile;
+		this.functions = functions;
 	    
 	    try {
 	    	// load the sqlite-JDBC driver using the current class loader
@@ -63,7 +83,21 @@ public class JSqlLiteDatabase implements com.augtech.geoapi.geopackage.ISQLDatab
 		// create a database connection
 		try {
 			if (connection==null || connection.isClosed() ) {
+				statementCache.clear();
+				rTreeEnabled = null;
 				connection = DriverManager.getConnection("jdbc:sqlite:"+dbFile.toString());
+				
+				// Functions required by the spatial index triggers
+				if (functions==null) {
+					rTreeEnabled = Boolean.FALSE;
+				} else {
+					try {
+						functions.register(connection);
+					} catch (SQLException e) {
+						e.printStackTrace();
+						rTreeEnabled = Boolean.FALSE;
+					}
+				}
 			}
 			if (connection.isReadOnly() && writeable) connection.setReadOnly(false);
 			
@@ -121,6 +155,17 @@ public class JSqlLiteDatabase implements com.augtech.geoapi.geopackage.ISQLDatab
 		return new JSqlLiteCursor( );
 	}
 
+	@Override
+	public ISQLStatement prepare(String sql) {
+		getDatabase(true);
+		try {
+			return statementCache.get(connection, sql);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new IllegalArgumentException("Unable to prepare statement: "+sql);
+		}
+	}
+
 	@Override
 	public void execSQL(String sql) {
 		getDatabase(true);
@@ -355,9 +400,66 @@ public class JSqlLiteDatabase implements com.augtech.geoapi.geopackage.ISQLDatab
 		return 0;
 	}
 
+	@Override
+	public void beginTransaction() {
+		getDatabase(true);
+		try {
+			connection.setAutoCommit(false);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void endTransaction(boolean successful) {
+		try {
+			if (successful) {
+				connection.commit();
+			} else {
+				connection.rollback();
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		} finally {
+			try {
+				connection.setAutoCommit(true);
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
 	@Override
 	public boolean hasRTreeEnabled() {
-		return false;
+		getDatabase(true);
+		if (rTreeEnabled!=null) return rTreeEnabled.booleanValue();
+		
+		rTreeEnabled = Boolean.FALSE;
+		
+		/* The compile options are only available from 3.6.23, so if not listed
+		 * try creating a (temporary) R*Tree to see if the module is present */
+		ICursor c = doRawQuery("PRAGMA compile_options;");
+		while (c.moveToNext()) {
+			if (c.getString(0).equalsIgnoreCase("ENABLE_RTREE")) {
+				rTreeEnabled = Boolean.TRUE;
+				break;
+			}
+		}
+		c.close();
+		
+		if (!rTreeEnabled) {
+			try {
+				Statement statement = connection.createStatement();
+				statement.execute("CREATE VIRTUAL TABLE temp.rtree_test USING rtree(id, minx, maxx, miny, maxy)");
+				statement.execute("DROP TABLE temp.rtree_test");
+				statement.close();
+				rTreeEnabled = Boolean.TRUE;
+			} catch (SQLException e) {
+				// No R*Tree module
+			}
+		}
+		
+		return rTreeEnabled.booleanValue();
 	}
 
 	@Override
@@ -375,6 +477,7 @@ public class JSqlLiteDatabase implements com.augtech.geoapi.geopackage.ISQLDatab
 	@Override
 	public void close() {
 		try {
+			statementCache.clear();
 			connection.close();
 		} catch (SQLException e) {
 			e.printStackTrace();
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** An implementation of {@link ISQLStatement} for the org.sqlite.JDBC driver
+ * wrapping a {@link PreparedStatement}.<p>
+ * Statements are normally obtained from a {@link Cache} so that closing the statement
+ * returns it for re-use rather than releasing the compiled SQL.
+ *
+ * @author Augmented Technologies Ltd.
+ *
+ */
+public class JSqlLiteStatement implements ISQLStatement {
+	PreparedStatement statement = null;
+	String sql = null;
+	Cache cache = null;
+
+	/**
+	 *
+	 * @param statement The compiled statement to wrap
+	 * @param sql The SQL the statement was compiled from
+	 * @param cache The Cache to return this statement to on {@link #close()}, or
+	 * <code>Null</code> to release the statement on close.
+	 */
+	public JSqlLiteStatement(PreparedStatement statement, String sql, Cache cache) {
+		this.statement = statement;
+		this.sql = sql;
+		this.cache = cache;
+	}
+
+	@Override
+	public void bindInt(int index, int value) {
+		try {
+			statement.setInt(index, value);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void bindLong(int index, long value) {
+		try {
+			statement.setLong(index, value);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void bindDouble(int index, double value) {
+		try {
+			statement.setDouble(index, value);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void bindString(int index, String value) {
+		try {
+			statement.setString(index, value);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void bindBlob(int index, byte[] value) {
+		try {
+			statement.setBytes(index, value);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void bindNull(int index) {
+		try {
+			statement.setNull(index, Types.NULL);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void clearBindings() {
+		try {
+			statement.clearParameters();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public ICursor executeQuery() {
+		try {
+			return new JSqlLiteCursor( statement.executeQuery() );
+		} catch (SQLException e) {
+			/* If no results were returned then "query does not return ResultSet"
+			 * is thrown, therefore just return a new blank cursor */
+			if (e.getMessage()!=null && e.getMessage().contains("does not return ResultSet"))
+				return new JSqlLiteCursor( );
+			
+			// Anything else is a real failure, which must not look like an empty result
+			e.printStackTrace();
+			throw new IllegalStateException("Unable to execute query: "+sql, e);
+		}
+	}
+
+	@Override
+	public long executeInsert() {
+		try {
+			if (statement.executeUpdate()<1) return -1;
+
+			ResultSet keys = statement.getGeneratedKeys();
+			long rowID = keys.next() ? keys.getLong(1) : -1;
+			keys.close();
+			return rowID;
+
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		return -1;
+	}
+
+	@Override
+	public int executeUpdate() {
+		try {
+			return statement.executeUpdate();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		return 0;
+	}
+
+	@Override
+	public void close() {
+		if (cache!=null) {
+			cache.release(this);
+		} else {
+			release();
+		}
+	}
+	/** Actually close the underlying PreparedStatement
+	 *
+	 */
+	void release() {
+		try {
+			statement.close();
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/** A cache of compiled {@link JSqlLiteStatement}'s for a single Connection, keyed
+	 * on the SQL text.<p>
+	 * A statement is removed from the cache whilst it is in use, so two callers preparing
+	 * the same SQL at the same time are given separate statements. On close, the
+	 * statement is returned to the cache, with the least recently used statement being
+	 * released once the cache is full.
+	 *
+	 */
+	public static class Cache {
+		private int maxSize;
+		private Map<String, List<JSqlLiteStatement>> idle =
+				new LinkedHashMap<String, List<JSqlLiteStatement>>(16, 0.75f, true);
+		private int idleCount = 0;
+
+		/**
+		 *
+		 * @param maxSize The maximum number of idle statements to retain
+		 */
+		public Cache(int maxSize) {
+			this.maxSize = maxSize;
+		}
+		/** Get a statement for the supplied SQL, either from the cache or
+		 * newly compiled on the supplied connection.
+		 *
+		 * @param connection The connection to compile the statement on if not cached
+		 * @param sql The SQL statement with '?' bind parameters
+		 * @return A statement with no values bound
+		 * @throws SQLException
+		 */
+		public synchronized ISQLStatement get(Connection connection, String sql) throws SQLException {
+			List<JSqlLiteStatement> stmts = idle.get(sql);
+			if (stmts!=null && stmts.size()>0) {
+				JSqlLiteStatement stmt = stmts.remove(stmts.size()-1);
+				if (stmts.size()==0) idle.remove(sql);
+				idleCount--;
+				stmt.clearBindings();
+				return stmt;
+			}
+
+			return new JSqlLiteStatement(connection.prepareStatement(sql), sql, this);
+		}
+		/** Return a statement to the cache
+		 *
+		 * @param stmt
+		 */
+		synchronized void release(JSqlLiteStatement stmt) {
+			/* Don't keep statements for a connection that has since been closed. Closing
+			 * the connection has already released them */
+			try {
+				if (stmt.statement.getConnection().isClosed()) return;
+			} catch (SQLException e) {
+				return;
+			}
+
+			List<JSqlLiteStatement> stmts = idle.get(stmt.sql);
+			if (stmts==null) {
+				stmts = new ArrayList<JSqlLiteStatement>();
+				idle.put(stmt.sql, stmts);
+			}
+			stmts.add(stmt);
+			idleCount++;
+
+			// Release the least recently used statements
+			Iterator<List<JSqlLiteStatement>> it = idle.values().iterator();
+			while (idleCount > maxSize && it.hasNext()) {
+				List<JSqlLiteStatement> lru = it.next();
+				while (idleCount > maxSize && lru.size()>0) {
+					lru.remove(0).release();
+					idleCount--;
+				}
+				if (lru.size()==0) it.remove();
+			}
+		}
+		/** Release all idle statements. This should be called whenever the
+		 * owning connection is closed or replaced.
+		 *
+		 */
+		public synchronized void clear() {
+			for (List<JSqlLiteStatement> stmts : idle.values()) {
+				for (JSqlLiteStatement s : stmts) s.release();
+			}
+			idle.clear();
+			idleCount = 0;
+		}
+	}
+}
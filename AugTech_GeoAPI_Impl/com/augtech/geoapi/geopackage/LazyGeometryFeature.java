@@ -0,0 +1,130 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.opengis.feature.simple.SimpleFeatureType;
+import org.opengis.geometry.BoundingBox;
+import org.opengis.referencing.crs.CoordinateReferenceSystem;
+
+import com.augtech.geoapi.feature.SimpleFeatureImpl;
+import com.augtech.geoapi.geometry.BoundingBoxImpl;
+import com.augtech.geoapi.geopackage.geometry.GeometryDecoder;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+
+/** A SimpleFeature that holds the GeoPackage geometry BLOB as read from the table and
+ * only decodes it to a {@link Geometry} on the first call to {@link #getDefaultGeometry()}.<p>
+ * {@link #getBounds()} is taken from the envelope in the geometry header without decoding the
+ * geometry (the WKB coordinates are only read if the header has no envelope). Once decoded
+ * the BLOB is released.<p>
+ * The {@link GeometryDecoder} is shared with the {@link FeatureReader} that built the
+ * feature, so geometries are decoded whilst holding a lock on it.
+ *
+ * @author Augmented Technologies Ltd.
+ *
+ */
+public class LazyGeometryFeature extends SimpleFeatureImpl {
+	private byte[] geomData;
+	private GeometryDecoder geomDecoder;
+
+	/** Create a new LazyGeometryFeature
+	 *
+	 * @param fid The unique feature ID
+	 * @param attrValues The list of attribute values for this feature.
+	 * @param fType The {@link SimpleFeatureType} this feature belongs to
+	 * @param geomData The GeoPackage geometry BLOB, or <code>Null</code> if the feature
+	 * has no geometry.
+	 * @param geomDecoder The decoder to use for the geometry.
+	 */
+	public LazyGeometryFeature(String fid, List<Object> attrValues, SimpleFeatureType fType,
+			byte[] geomData, GeometryDecoder geomDecoder) {
+		super(fid, attrValues, fType, null);
+		this.geomData = geomData;
+		this.geomDecoder = geomDecoder;
+	}
+	/** Get the feature's geometry, decoding it from the BLOB if this
+	 * is the first call.
+	 *
+	 * @throws IllegalStateException If the geometry cannot be decoded
+	 */
+	@Override
+	public Geometry getDefaultGeometry() {
+		if (geomData==null) return defaultGeom;
+
+		synchronized (geomDecoder) {
+			try {
+				defaultGeom = geomDecoder.setGeometryData( geomData ).getGeometry();
+			} catch (IOException e) {
+				throw new IllegalStateException("Unable to decode geometry for feature "+getID(), e);
+			}
+		}
+		geomData = null;
+
+		return defaultGeom;
+	}
+	@Override
+	public void setDefaultGeometry(Object geom) {
+		super.setDefaultGeometry(geom);
+		geomData = null;
+		bounds = null;
+	}
+	/** Get the bounds of the feature's geometry. If the geometry has not been
+	 * decoded the bounds are read from the geometry header.
+	 *
+	 */
+	@Override
+	public BoundingBox getBounds() {
+		if (bounds!=null) return bounds;
+
+		CoordinateReferenceSystem crs = featureType.getGeometryDescriptor().getCoordinateReferenceSystem();
+
+		if (geomData==null) {
+			if (defaultGeom==null || defaultGeom.isEmpty()) return new BoundingBoxImpl(crs);
+
+			Envelope e = defaultGeom.getEnvelopeInternal();
+			bounds = new BoundingBoxImpl(e.getMinX(), e.getMaxX(), e.getMinY(), e.getMaxY(), crs);
+			return bounds;
+		}
+
+		double[] env = null;
+		try {
+			env = GeometryDecoder.readEnvelope( geomData );
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to read envelope for feature "+getID(), e);
+		}
+		if (env==null) return new BoundingBoxImpl(crs);
+
+		bounds = new BoundingBoxImpl(env[0], env[1], env[2], env[3], crs);
+		return bounds;
+	}
+	/** Has the geometry been decoded yet?
+	 *
+	 * @return True if decoded, or the feature has no geometry
+	 */
+	public boolean isGeometryDecoded() {
+		return geomData==null;
+	}
+	/** Get the GeoPackage geometry BLOB as read from the table
+	 *
+	 * @return The BLOB, or <code>Null</code> once the geometry has been decoded
+	 */
+	public byte[] getGeometryData() {
+		return geomData;
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opengis.feature.simple.SimpleFeature;
+
+import com.augtech.geoapi.geopackage.geometry.GeometryEncoder;
+
+/** Encodes features to rows on a pool of worker threads, whilst the calling thread
+ * writes the finished rows to the database.<p>
+ * Features are handed to the workers in chunks of {@link #CHUNK_SIZE}. Geometry encoding,
+ * simplification and constraint checks are all done by the workers, each with its own
+ * {@link GeometryEncoder}. Only a limited number of chunks are in progress at once, so the
+ * memory used is bounded however many features are being inserted, and the chunks are
+ * written in the same order as the features were supplied.<p>
+ * The database is only ever accessed from the calling thread.
+ *
+ * @author Augmented Technologies Ltd.
+ *
+ */
+class ParallelFeatureEncoder {
+	/** The number of features passed to a worker at once */
+	static final int CHUNK_SIZE = 256;
+	/** The number of chunks each worker can have queued or in progress */
+	static final int CHUNKS_PER_WORKER = 4;
+	private static AtomicInteger poolCount = new AtomicInteger();
+
+	private FeatureRowLayout layout;
+	private int numWorkers;
+	private ThreadLocal<GeometryEncoder> encoders = new ThreadLocal<GeometryEncoder>() {
+		@Override
+		protected GeometryEncoder initialValue() {
+			return new GeometryEncoder();
+		}
+	};
+
+	/**
+	 *
+	 * @param layout The layout of the table being written to
+	 * @param numWorkers The number of threads to encode features on
+	 */
+	ParallelFeatureEncoder(FeatureRowLayout layout, int numWorkers) {
+		if (numWorkers < 1)
+			throw new IllegalArgumentException("At least one worker thread is required");
+
+		this.layout = layout;
+		this.numWorkers = numWorkers;
+	}
+	/** Encode all features on the worker threads and add the rows to the writer
+	 * on this thread. The worker threads are stopped before returning.
+	 *
+	 * @param features The features to encode
+	 * @param writer The writer to add the rows to
+	 * @throws Exception Any exception thrown encoding a feature or writing a row. No
+	 * further rows are added to the writer once an exception is thrown.
+	 */
+	void encodeAll(Iterator<SimpleFeature> features, BulkWriter writer) throws Exception {
+		final int poolID = poolCount.incrementAndGet();
+		ExecutorService pool = Executors.newFixedThreadPool(numWorkers, new ThreadFactory() {
+			AtomicInteger threadCount = new AtomicInteger();
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "gpkg-encode-"+poolID+"-"+threadCount.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		int maxInProgress = numWorkers * CHUNKS_PER_WORKER;
+		LinkedList<Future<Object[][]>> inProgress = new LinkedList<Future<Object[][]>>();
+
+		try {
+			while (true) {
+
+				// Keep the workers busy
+				while (inProgress.size() < maxInProgress && features.hasNext()) {
+					inProgress.add( pool.submit( new EncodeTask( nextChunk(features) ) ) );
+				}
+				if (inProgress.isEmpty()) break;
+
+				// Write the oldest chunk once ready
+				Object[][] rows = null;
+				try {
+					rows = inProgress.removeFirst().get();
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+					throw e;
+				}
+				for (Object[] row : rows) {
+					writer.add(row);
+				}
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static SimpleFeature[] nextChunk(Iterator<SimpleFeature> features) {
+		SimpleFeature[] chunk = new SimpleFeature[CHUNK_SIZE];
+		int size = 0;
+		while (size < CHUNK_SIZE && features.hasNext()) {
+			chunk[size++] = features.next();
+		}
+		if (size < CHUNK_SIZE) {
+			SimpleFeature[] tmp = new SimpleFeature[size];
+			System.arraycopy(chunk, 0, tmp, 0, size);
+			chunk = tmp;
+		}
+		return chunk;
+	}
+
+	/** Encodes a chunk of features to rows on a worker thread */
+	private class EncodeTask implements Callable<Object[][]> {
+		private SimpleFeature[] chunk;
+
+		EncodeTask(SimpleFeature[] chunk) {
+			this.chunk = chunk;
+		}
+		@Override
+		public Object[][] call() throws Exception {
+			GeometryEncoder encoder = encoders.get();
+			Object[][] rows = new Object[chunk.length][];
+			for (int i=0; i<chunk.length; i++) {
+				rows[i] = layout.fillRow(chunk[i], null, encoder);
+			}
+			return rows;
+		}
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** A least recently used cache of tile images, bounded by the total number of
+ * bytes held rather than the number of tiles.<p>
+ * Tiles are keyed on table name, zoom level, column and row. Once the total size of the
+ * cached images exceeds the maximum the least recently used tiles are evicted. A tile larger
+ * than the maximum is never cached. The cache is used by {@link GeoPackage#getTile(String, int, int, int)}
+ * and tiles are invalidated when they are inserted, updated or deleted through this library, or
+ * the tiles table is replaced. If tiles are written any other way (such as raw SQL through 
+ * {@link ISQLDatabase}) call {@link #invalidate(String)} or {@link #clear()}.<p>
+ * The byte[] returned from the cache are shared and must not be modified.
+ * All methods are thread safe.
+ *
+ * @author Augmented Technologies Ltd.
+ *
+ */
+public class TileCache {
+	/** The default maximum size of the cache in bytes (16MB) */
+	public static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+
+	private Map<TileKey, byte[]> tiles = new LinkedHashMap<TileKey, byte[]>(256, 0.75f, true);
+	private long maxBytes;
+	private long sizeBytes = 0;
+	private long hitCount = 0;
+	private long missCount = 0;
+	private long evictionCount = 0;
+
+	/**
+	 *
+	 * @param maxBytes The maximum total size of the cached images in bytes. If 0 or
+	 * less nothing is cached.
+	 */
+	public TileCache(long maxBytes) {
+		this.maxBytes = maxBytes;
+	}
+	/** Get a tile from the cache
+	 *
+	 * @param tableName The tiles table name
+	 * @param zoom The zoom level
+	 * @param tileColumn The column ID (x)
+	 * @param tileRow The row ID (y)
+	 * @return The tile image or <code>Null</code> if not cached
+	 */
+	public synchronized byte[] get(String tableName, int zoom, int tileColumn, int tileRow) {
+		byte[] tile = tiles.get( new TileKey(tableName, zoom, tileColumn, tileRow) );
+		if (tile==null) {
+			missCount++;
+		} else {
+			hitCount++;
+		}
+		return tile;
+	}
+	/** Add a tile to the cache, evicting the least recently used tiles if required.
+	 *
+	 * @param tableName The tiles table name
+	 * @param zoom The zoom level
+	 * @param tileColumn The column ID (x)
+	 * @param tileRow The row ID (y)
+	 * @param tile The tile image
+	 */
+	public synchronized void put(String tableName, int zoom, int tileColumn, int tileRow, byte[] tile) {
+		if (tile==null || tile.length > maxBytes) return;
+
+		byte[] old = tiles.put( new TileKey(tableName, zoom, tileColumn, tileRow), tile );
+		if (old!=null) sizeBytes -= old.length;
+		sizeBytes += tile.length;
+
+		trim();
+	}
+	/** Remove a single tile from the cache
+	 *
+	 * @param tableName The tiles table name
+	 * @param zoom The zoom level
+	 * @param tileColumn The column ID (x)
+	 * @param tileRow The row ID (y)
+	 */
+	public synchronized void invalidate(String tableName, int zoom, int tileColumn, int tileRow) {
+		byte[] old = tiles.remove( new TileKey(tableName, zoom, tileColumn, tileRow) );
+		if (old!=null) sizeBytes -= old.length;
+	}
+	/** Remove all tiles for a table from the cache
+	 *
+	 * @param tableName The tiles table name
+	 */
+	public synchronized void invalidate(String tableName) {
+		Iterator<Map.Entry<TileKey, byte[]>> it = tiles.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<TileKey, byte[]> e = it.next();
+			if (e.getKey().tableName.equals(tableName)) {
+				sizeBytes -= e.getValue().length;
+				it.remove();
+			}
+		}
+	}
+	/** Remove all tiles from the cache. The hit, miss and eviction counts
+	 * are not reset.
+	 *
+	 */
+	public synchronized void clear() {
+		tiles.clear();
+		sizeBytes = 0;
+	}
+	/** Set the maximum total size of the cached images, evicting tiles if
+	 * the cache is now too large.
+	 *
+	 * @param maxBytes The maximum size in bytes. If 0 or less nothing is cached.
+	 */
+	public synchronized void setMaxBytes(long maxBytes) {
+		this.maxBytes = maxBytes;
+		trim();
+	}
+	/** Get the maximum total size of the cached images
+	 *
+	 * @return The size in bytes
+	 */
+	public synchronized long getMaxBytes() {
+		return maxBytes;
+	}
+	/** Get the total size of the images currently cached
+	 *
+	 * @return The size in bytes
+	 */
+	public synchronized long getSizeBytes() {
+		return sizeBytes;
+	}
+	/** Get the number of tiles currently cached
+	 *
+	 * @return
+	 */
+	public synchronized int getNumTiles() {
+		return tiles.size();
+	}
+	/** Get the number of requests that were found in the cache
+	 *
+	 * @return
+	 */
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+	/** Get the number of requests that were not found in the cache
+	 *
+	 * @return
+	 */
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+	/** Get the number of tiles removed from the cache to make space for others
+	 *
+	 * @return
+	 */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+	/** Reset the hit, miss and eviction counts to 0
+	 *
+	 */
+	public synchronized void resetCounts() {
+		hitCount = 0;
+		missCount = 0;
+		evictionCount = 0;
+	}
+	/** Evict the least recently used tiles until within the maximum size */
+	private void trim() {
+		if (sizeBytes <= maxBytes) return;
+
+		Iterator<byte[]> it = tiles.values().iterator();
+		while (sizeBytes > maxBytes && it.hasNext()) {
+			sizeBytes -= it.next().length;
+			it.remove();
+			evictionCount++;
+		}
+	}
+
+	/** The reference for a single tile */
+	private static class TileKey {
+		final String tableName;
+		final int zoom;
+		final int tileColumn;
+		final int tileRow;
+		final int hash;
+
+		TileKey(String tableName, int zoom, int tileColumn, int tileRow) {
+			this.tableName = tableName;
+			this.zoom = zoom;
+			this.tileColumn = tileColumn;
+			this.tileRow = tileRow;
+
+			int h = tableName.hashCode();
+			h = 31 * h + zoom;
+			h = 31 * h + tileColumn;
+			h = 31 * h + tileRow;
+			this.hash = h;
+		}
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+		@Override
+		public boolean equals(Object obj) {
+			if (this==obj) return true;
+			if (!(obj instanceof TileKey)) return false;
+
+			TileKey k = (TileKey) obj;
+			return zoom==k.zoom && tileColumn==k.tileColumn && tileRow==k.tileRow
+					&& tableName.equals(k.tableName);
+		}
+	}
+}
@@ -0,0 +1,369 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import com.augtech.geoapi.geopackage.table.TilesTable;
+
+/** Imports a pyramid of tile images in to an existing {@link TilesTable}, either from a
+ * directory tree laid out as <code>zoom/x/y.ext</code> or from an MBTiles file.<p>
+ * Directory trees are read by a pool of reader threads, in chunks of {@link #CHUNK_SIZE} files,
+ * with the image type checked from the first bytes of each file on the reader thread. The
+ * calling thread writes every tile through a single {@link BulkTileWriter}, so only a limited
+ * number of chunks are held in memory and the database is only accessed from the calling thread.<p>
+ * Tile trees are normally numbered from 0 (as used by OpenStreetMap, Google etc.) so 1 is added to
+ * the column and row to match the tile matrix in this GeoPackage. If the tree uses the TMS scheme
+ * (rows numbered from the bottom) call {@link #setTMS(boolean)}. Files that are not PNG or JPEG,
+ * or are outside the tile matrix, are skipped and counted by {@link #getNumSkipped()}.
+ *
+ * @author Augmented Technologies Ltd.
+ *
+ */
+public class TilePyramidImporter {
+	/** The number of files passed to a reader thread at once */
+	public static final int CHUNK_SIZE = 64;
+	/** The number of chunks each reader can have queued or in progress */
+	static final int CHUNKS_PER_READER = 4;
+	private static AtomicInteger poolCount = new AtomicInteger();
+
+	private GeoPackage geoPackage;
+	private String tableName;
+	private int readThreads = 4;
+	private int commitEvery = BulkWriter.DEFAULT_COMMIT_EVERY;
+	private String journalMode = null;
+	private String synchronous = null;
+	private boolean tms = false;
+	private long numSkipped = 0;
+
+	/** Create a new importer for a tiles table
+	 *
+	 * @param geoPackage The GeoPackage to import in to
+	 * @param tableName The <i>case sensitive</i> name of an existing tiles table
+	 */
+	public TilePyramidImporter(GeoPackage geoPackage, String tableName) {
+		this.geoPackage = geoPackage;
+		this.tableName = tableName;
+	}
+	/** Set the number of threads used to read files from a directory tree.
+	 * The default is 4.
+	 *
+	 * @param readThreads
+	 */
+	public void setReadThreads(int readThreads) {
+		if (readThreads < 1)
+			throw new IllegalArgumentException("At least one reader thread is required");
+		this.readThreads = readThreads;
+	}
+	/** Set the number of tiles to write in each transaction.
+	 * The default is {@link BulkWriter#DEFAULT_COMMIT_EVERY}
+	 *
+	 * @param commitEvery
+	 */
+	public void setCommitEvery(int commitEvery) {
+		this.commitEvery = commitEvery;
+	}
+	/** Set PRAGMA's to use for the duration of an import.
+	 *
+	 * @param journalMode A value for PRAGMA journal_mode, or <code>Null</code> to leave unchanged
+	 * @param synchronous A value for PRAGMA synchronous, or <code>Null</code> to leave unchanged
+	 * @see GeoPackage#openBulkWriter(String, int, String, String)
+	 */
+	public void setPragmas(String journalMode, String synchronous) {
+		this.journalMode = journalMode;
+		this.synchronous = synchronous;
+	}
+	/** Set whether the rows in a directory tree are numbered from the bottom
+	 * of the matrix (TMS) rather than the top. The default is False.
+	 *
+	 * @param tms
+	 */
+	public void setTMS(boolean tms) {
+		this.tms = tms;
+	}
+	/** Get the number of tiles skipped by the last import as they were not PNG or
+	 * JPEG images, or were outside the tile matrix.
+	 *
+	 * @return
+	 */
+	public long getNumSkipped() {
+		return numSkipped;
+	}
+	/** Import all tiles from a directory tree laid out as <code>zoom/x/y.ext</code>.
+	 * Any files or directories that are not named by a number are ignored.
+	 *
+	 * @param rootDir The directory holding the zoom level directories
+	 * @return The number of tiles inserted
+	 * @throws Exception If a file cannot be read or a tile cannot be inserted. Tiles
+	 * in transactions committed before the failure remain in the table.
+	 */
+	public long importDirectory(File rootDir) throws Exception {
+		if (!rootDir.isDirectory())
+			throw new IllegalArgumentException(rootDir+" is not a directory");
+
+		numSkipped = 0;
+		final int poolID = poolCount.incrementAndGet();
+		ExecutorService pool = Executors.newFixedThreadPool(readThreads, new ThreadFactory() {
+			AtomicInteger threadCount = new AtomicInteger();
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "gpkg-tile-read-"+poolID+"-"+threadCount.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+
+		int maxInProgress = readThreads * CHUNKS_PER_READER;
+		LinkedList<Future<TileFile[]>> inProgress = new LinkedList<Future<TileFile[]>>();
+		List<TileFile> chunk = new ArrayList<TileFile>(CHUNK_SIZE);
+
+		BulkTileWriter writer = geoPackage.openBulkTileWriter(tableName, commitEvery, journalMode, synchronous);
+		boolean success = false;
+		try {
+
+			for (File zDir : listNumbered(rootDir, true)) {
+				int z = getNumber(zDir);
+
+				for (File xDir : listNumbered(zDir, true)) {
+					int x = getNumber(xDir);
+
+					for (File yFile : listNumbered(xDir, false)) {
+						chunk.add( new TileFile(z, x, getNumber(yFile), yFile) );
+						if (chunk.size() < CHUNK_SIZE) continue;
+
+						inProgress.add( pool.submit( new ReadTask(chunk) ) );
+						chunk = new ArrayList<TileFile>(CHUNK_SIZE);
+
+						// Write the oldest chunks whilst the readers are busy
+						while (inProgress.size() >= maxInProgress) {
+							write(inProgress.removeFirst(), writer);
+						}
+					}
+				}
+			}
+			if (chunk.size()>0) inProgress.add( pool.submit( new ReadTask(chunk) ) );
+
+			while (!inProgress.isEmpty()) {
+				write(inProgress.removeFirst(), writer);
+			}
+
+			success = true;
+		} finally {
+			pool.shutdownNow();
+			if (success) {
+				writer.close();
+			} else {
+				writer.abort();
+			}
+		}
+
+		geoPackage.log.log(Level.INFO, "Imported "+writer.getNumInserted()+" tiles from "+rootDir
+				+" ("+numSkipped+" skipped)");
+
+		return writer.getNumInserted();
+	}
+	/** Import all tiles from an MBTiles file. The file is attached to the GeoPackage's
+	 * database for the duration of the import and the tiles read from its <code>tiles</code>
+	 * table. MBTiles always use the TMS scheme, so {@link #setTMS(boolean)} is ignored.
+	 *
+	 * @param mbTiles The MBTiles file
+	 * @return The number of tiles inserted
+	 * @throws Exception If the file cannot be attached or read, or a tile cannot be inserted
+	 */
+	public long importMBTiles(File mbTiles) throws Exception {
+		if (!mbTiles.isFile())
+			throw new IllegalArgumentException(mbTiles+" does not exist");
+
+		numSkipped = 0;
+		ISQLDatabase db = geoPackage.getDatabase();
+
+		// Can't attach within a transaction, so before the writer is opened
+		db.execSQL("ATTACH DATABASE '"+mbTiles.getAbsolutePath().replace("'", "''")+"' AS mbtiles_import");
+
+		try {
+			BulkTileWriter writer = geoPackage.openBulkTileWriter(tableName, commitEvery, journalMode, synchronous);
+			ICursor cur = null;
+			boolean success = false;
+			try {
+				cur = db.doRawQuery("SELECT zoom_level, tile_column, tile_row, tile_data FROM mbtiles_import.tiles");
+				if (cur==null) throw new Exception("Could not read tiles from "+mbTiles);
+
+				while (cur.moveToNext()) {
+					int z = cur.getInt(0);
+					add(writer, cur.getBlob(3), z, cur.getInt(1), cur.getInt(2), true);
+				}
+				success = true;
+			} finally {
+				if (cur!=null) cur.close();
+				if (success) {
+					writer.close();
+				} else {
+					writer.abort();
+				}
+			}
+
+			geoPackage.log.log(Level.INFO, "Imported "+writer.getNumInserted()+" tiles from "+mbTiles
+					+" ("+numSkipped+" skipped)");
+
+			return writer.getNumInserted();
+
+		} finally {
+			db.execSQL("DETACH DATABASE mbtiles_import");
+		}
+	}
+	/** Wait for a chunk to be read and write its tiles */
+	private void write(Future<TileFile[]> future, BulkTileWriter writer) throws Exception {
+		TileFile[] tiles = null;
+		try {
+			tiles = future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+			throw e;
+		}
+
+		for (TileFile tf : tiles) {
+			if (tf.data==null) {
+				numSkipped++;
+				geoPackage.log.log(Level.FINE, tf.file+" is not a PNG or JPEG image");
+				continue;
+			}
+			add(writer, tf.data, tf.zoom, tf.x, tf.y, tms);
+		}
+	}
+	/** Convert a 0 based tile reference to the tile matrix and add to the writer */
+	private void add(BulkTileWriter writer, byte[] data, int zoom, int x, int y, boolean flipY) throws Exception {
+		int tileColumn = x + 1;
+		int tileRow = flipY ? writer.getMatrixHeight(zoom) - y : y + 1;
+
+		if (!BulkTileWriter.isImageTypeValid(data) || !writer.isTileInMatrix(tileColumn, tileRow, zoom)) {
+			numSkipped++;
+			return;
+		}
+
+		writer.add(data, tileColumn, tileRow, zoom);
+	}
+	/** Get the files or directories within a directory that are named by a number
+	 * (ignoring any extension), sorted by name. */
+	private static File[] listNumbered(File dir, boolean directories) {
+		File[] files = dir.listFiles();
+		if (files==null) return new File[0];
+
+		List<File> ret = new ArrayList<File>(files.length);
+		for (File f : files) {
+			if (f.isDirectory()==directories && getNumber(f)>-1) ret.add(f);
+		}
+		File[] sorted = ret.toArray(new File[ret.size()]);
+		Arrays.sort(sorted);
+
+		return sorted;
+	}
+	/** Get the number a file is named by, ignoring any extension.
+	 * @return The number or -1 if not a number */
+	private static int getNumber(File f) {
+		String name = f.getName();
+		int dot = name.indexOf('.');
+		int end = dot==-1 ? name.length() : dot;
+		if (end==0 || end>9) return -1;
+
+		int num = 0;
+		for (int i=0; i<end; i++) {
+			char c = name.charAt(i);
+			if (c<'0' || c>'9') return -1;
+			num = num * 10 + (c - '0');
+		}
+		return num;
+	}
+	/** Read a whole file using a FileChannel
+	 *
+	 * @param file
+	 * @return The file contents
+	 * @throws IOException
+	 */
+	static byte[] readFile(File file) throws IOException {
+		FileInputStream fis = new FileInputStream(file);
+		try {
+			FileChannel channel = fis.getChannel();
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException(file+" is too large to be a tile");
+
+			ByteBuffer buf = ByteBuffer.allocate((int) size);
+			while (buf.hasRemaining()) {
+				if (channel.read(buf) < 0) break;
+			}
+
+			byte[] data = buf.array();
+			if (buf.position()!=data.length) {
+				// The file was truncated whilst reading
+				data = Arrays.copyOf(data, buf.position());
+			}
+			return data;
+		} finally {
+			fis.close();
+		}
+	}
+
+	/** A single tile file and, once read, its data */
+	private static class TileFile {
+		int zoom;
+		int x;
+		int y;
+		File file;
+		byte[] data = null;
+
+		TileFile(int zoom, int x, int y, File file) {
+			this.zoom = zoom;
+			this.x = x;
+			this.y = y;
+			this.file = file;
+		}
+	}
+
+	/** Reads a chunk of files on a reader thread. Files that are not PNG or
+	 * JPEG images are left without data. */
+	private static class ReadTask implements Callable<TileFile[]> {
+		private List<TileFile> chunk;
+
+		ReadTask(List<TileFile> chunk) {
+			this.chunk = chunk;
+		}
+		@Override
+		public TileFile[] call() throws Exception {
+			TileFile[] tiles = chunk.toArray(new TileFile[chunk.size()]);
+			for (TileFile tf : tiles) {
+				byte[] data = readFile(tf.file);
+				if (BulkTileWriter.isImageTypeValid(data)) tf.data = data;
+			}
+			return tiles;
+		}
+	}
+}
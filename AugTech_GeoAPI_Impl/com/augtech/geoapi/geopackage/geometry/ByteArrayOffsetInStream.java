@@ -0,0 +1,71 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage.geometry;
+
+import java.io.IOException;
+
+import com.vividsolutions.jts.io.ByteArrayInStream;
+import com.vividsolutions.jts.io.InStream;
+
+/** An {@link InStream} that reads from a byte[] starting at an offset, allowing
+ * the WKB within a GeoPackage geometry BLOB to be read without first copying it
+ * to a new array.<p>
+ * As per {@link ByteArrayInStream}, reading past the end of the array
+ * fills the remainder of the buffer with zeros.
+ *
+ * @author Augmented Technologies Ltd.
+ *
+ */
+public class ByteArrayOffsetInStream implements InStream {
+	private byte[] buffer;
+	private int position;
+
+	/**
+	 *
+	 * @param buffer The array to read from
+	 * @param offset The index of the first byte to read
+	 */
+	public ByteArrayOffsetInStream(byte[] buffer, int offset) {
+		setBuffer(buffer, offset);
+	}
+	/** Re-use this stream on a new array
+	 *
+	 * @param buffer The array to read from
+	 * @param offset The index of the first byte to read
+	 */
+	public void setBuffer(byte[] buffer, int offset) {
+		this.buffer = buffer;
+		this.position = offset;
+	}
+
+	@Override
+	public void read(byte[] buf) throws IOException {
+		int numToRead = buf.length;
+		if (position + numToRead > buffer.length) {
+			numToRead = Math.max(0, buffer.length - position);
+			for (int i = numToRead; i < buf.length; i++) buf[i] = 0;
+		}
+		System.arraycopy(buffer, position, buf, 0, numToRead);
+		position += numToRead;
+	}
+	/** Get the index of the next byte to be read
+	 *
+	 * @return
+	 */
+	public int getPosition() {
+		return position;
+	}
+}
@@ -15,13 +15,11 @@
  */
 package com.augtech.geoapi.geopackage.geometry;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 
 import com.augtech.geoapi.geopackage.GeoPackage;
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
-import com.vividsolutions.jts.io.ByteOrderValues;
 
 /** An abstract class for processing byte[] data from a GeoPacakge
  * GEOMETRY field into JTS Geometry.
@@ -30,7 +28,10 @@ import com.vividsolutions.jts.io.ByteOrderValues;
  *
  */
 public abstract class GeometryDecoder {
+	/** The complete GeoPackage geometry BLOB. The WKB starts at {@link #wkbOffset} */
 	protected byte[] geomData = null;
+	/** The index of the first WKB byte within {@link #geomData} */
+	protected int wkbOffset = 0;
 	protected int gpkgVersion = 0;
 	protected Envelope envelope = new Envelope();
 	protected boolean isEmpty = false;
@@ -39,10 +40,37 @@ public abstract class GeometryDecoder {
 	protected int byteOrder = 1;
 	protected boolean gpkgVaild = true;
 	
+	/* Decoded header flags. The lower 7 bits hold the number of envelope bytes */
+	static final int FLAG_ENVELOPE_BYTES = 0x7f;
+	static final int FLAG_LITTLE_ENDIAN = 1 << 7;
+	static final int FLAG_EMPTY = 1 << 8;
+	static final int FLAG_EXTENDED = 1 << 9;
+	static final int FLAG_INVALID = 1 << 10;
+	/** The decoded header flags for every possible value of the flags byte, so
+	 * the header can be decoded with a single look-up */
+	static final int[] HEADER_FLAGS = new int[256];
+	static {
+		// Envelope sizes in bytes for each of the envelope contents indicator codes
+		int[] envelopeBytes = new int[] {0, 32, 48, 48, 64};
+		
+		for (int flags=0; flags < 256; flags++) {
+			// Bits 1-3 are the envelope contents indicator
+			int envIndicator = (flags >> 1) & 7;
+			int info = envIndicator < envelopeBytes.length ? envelopeBytes[envIndicator] : FLAG_INVALID;
+			// Bit 0 is the byte order, bit 4 the empty flag and bit 5 the geometry type
+			if ((flags & 1)==1) info |= FLAG_LITTLE_ENDIAN;
+			if ((flags >> 4 & 1)==1) info |= FLAG_EMPTY;
+			if ((flags >> 5 & 1)==1) info |= FLAG_EXTENDED;
+			// Bits 6 and 7 are reserved and currently 0
+			HEADER_FLAGS[flags] = info;
+		}
+	}
+	
 	/** Set the field data on this decoder. This must be done prior
-	 * to calling {@link #getGeometry()}.<p> The header information is decoded immediately
-	 * with remaining geometry byte data stored on {@link #geomData} for further
-	 * processing.
+	 * to calling {@link #getGeometry()}.<p> The header information is decoded immediately,
+	 * directly from the supplied array. The array is then held on {@link #geomData} with 
+	 * {@link #wkbOffset} set to the start of the WKB for further processing, so must 
+	 * not be modified whilst the decoder is in use.
 	 * 
 	 * @param inputGeom The input byte[]
 	 * @return This decoder
@@ -53,67 +81,125 @@ public abstract class GeometryDecoder {
 		this.clear();
 		
 		if (inputGeom==null) throw new IllegalArgumentException("Geometry value is null");
-		
-		ByteArrayInputStream bais = new ByteArrayInputStream( inputGeom );
+		if (inputGeom.length<8) throw new IllegalArgumentException("Geometry header is incomplete");
 		
 		// 'Magic' and version
-		byte[] buffer = new byte[2];
-		bais.read(buffer);
-		String magic = new String(buffer);
-		gpkgVaild = magic.equals("GP");
+		gpkgVaild = inputGeom[0]=='G' && inputGeom[1]=='P';
 
-		gpkgVersion = bais.read();
+		gpkgVersion = inputGeom[2] & 0xff;
 		
 		if (gpkgVersion>GeoPackage.MAX_GPKG_VERSION)
 			throw new IllegalArgumentException("Geometry version is greater than supported version");
 		
 		// Decode header flags
-		int flags = bais.read();
-		byteOrder = (flags & 1);
+		int flagInfo = HEADER_FLAGS[inputGeom[3] & 0xff];
+		if ((flagInfo & FLAG_INVALID)!=0)
+			throw new IllegalArgumentException("Invalid envelope contents indicator in geometry header");
 		
-		// Envelope
-		int envBytes = 0;
-		if ( (flags >> 1 & 1)==1) {
-			envBytes = 32; // XY
-		} else if ( (flags >> 2 & 1)==1 ) {
-			envBytes = 48; // XYZ
-		} else if ( (flags >> 3 & 1)==1 ) {
-			envBytes = 48; // XYM
-		} else if ( (flags >> 4 & 1)==1 ) {
-			envBytes = 64; // XYZM
-		}
-		isEmpty = (flags & (1 << 4))==1;
-		extendedGeom = (flags & (1 << 5))==1;
-		// Bits 7 and 8 are reserved and currently 0
-
-		int jtsByteOrder = byteOrder==0 ? ByteOrderValues.BIG_ENDIAN : ByteOrderValues.LITTLE_ENDIAN;
+		int envBytes = flagInfo & FLAG_ENVELOPE_BYTES;
+		boolean littleEndian = (flagInfo & FLAG_LITTLE_ENDIAN)!=0;
+		byteOrder = littleEndian ? 1 : 0;
+		isEmpty = (flagInfo & FLAG_EMPTY)!=0;
+		extendedGeom = (flagInfo & FLAG_EXTENDED)!=0;
 		
 		// SRID
-		buffer = new byte[4];
-		bais.read( buffer );
-		srsID = ByteOrderValues.getInt(buffer, jtsByteOrder);
+		srsID = readInt(inputGeom, 4, littleEndian);
 		
-		// Envelope
-		int numCoord = envBytes/8;
-		buffer = new byte[ envBytes/4 ];
-		double[] vals = envBytes > 0 ? new double[numCoord] : null;
-		for(int i=0; i < numCoord; i++) {
-			bais.read(buffer);
-			vals[i] = ByteOrderValues.getDouble(buffer, jtsByteOrder);
+		// Construct the header defined envelope
+		int headerLength = 8+envBytes;
+		if (inputGeom.length<headerLength) 
+			throw new IllegalArgumentException("Geometry header is incomplete");
+		
+		if (envBytes > 0) {
+			envelope.init(
+					readDouble(inputGeom, 8, littleEndian), 
+					readDouble(inputGeom, 16, littleEndian), 
+					readDouble(inputGeom, 24, littleEndian), 
+					readDouble(inputGeom, 32, littleEndian) );
 		}
 		
-		// Construct the header defined envelope
-		if (vals!=null) {
-			envelope.init(vals[0], vals[1], vals[2], vals[3]);
+		geomData = inputGeom;
+		wkbOffset = headerLength;
+		
+		return this;
+	}
+	/** Read a 4 byte int from an array
+	 * 
+	 * @param buf The array to read from
+	 * @param offset The index of the first byte
+	 * @param littleEndian The byte order of the value
+	 * @return
+	 */
+	protected static int readInt(byte[] buf, int offset, boolean littleEndian) {
+		if (littleEndian) {
+			return    ((buf[offset+3] & 0xff) << 24)
+					| ((buf[offset+2] & 0xff) << 16)
+					| ((buf[offset+1] & 0xff) << 8)
+					| ((buf[offset] & 0xff));
 		}
+		return    ((buf[offset] & 0xff) << 24)
+				| ((buf[offset+1] & 0xff) << 16)
+				| ((buf[offset+2] & 0xff) << 8)
+				| ((buf[offset+3] & 0xff));
+	}
+	/** Read an 8 byte double from an array
+	 * 
+	 * @param buf The array to read from
+	 * @param offset The index of the first byte
+	 * @param littleEndian The byte order of the value
+	 * @return
+	 */
+	protected static double readDouble(byte[] buf, int offset, boolean littleEndian) {
+		long high = readInt(buf, littleEndian ? offset+4 : offset, littleEndian) & 0xffffffffL;
+		long low = readInt(buf, littleEndian ? offset : offset+4, littleEndian) & 0xffffffffL;
+		return Double.longBitsToDouble( (high << 32) | low );
+	}
+
+	/** Read the envelope of a GeoPackage geometry BLOB without decoding the header in to
+	 * a decoder instance or constructing the Geometry. If the header has no envelope the
+	 * WKB coordinates are read to calculate it.
+	 *
+	 * @param gpkgGeom The GeoPackage geometry BLOB
+	 * @return The envelope as minx, maxx, miny, maxy or <code>Null</code> if the geometry
+	 * is empty or the BLOB is not a GeoPackage geometry.
+	 * @throws IOException If the WKB has to be decoded and is invalid
+	 */
+	public static double[] readEnvelope(byte[] gpkgGeom) throws IOException {
+		if (gpkgGeom==null || gpkgGeom.length<8 || gpkgGeom[0]!='G' || gpkgGeom[1]!='P') return null;
+
+		int flagInfo = HEADER_FLAGS[gpkgGeom[3] & 0xff];
+		if ((flagInfo & (FLAG_EMPTY | FLAG_INVALID))!=0) return null;
+
+		int headerLength = 8 + (flagInfo & FLAG_ENVELOPE_BYTES);
+		if (gpkgGeom.length<headerLength) return null;
 		
-		int headerLength = 8+envBytes;
-		geomData = new byte[inputGeom.length-headerLength];
-		bais.read( geomData );
+		if (headerLength>8) {
+			boolean littleEndian = (flagInfo & FLAG_LITTLE_ENDIAN)!=0;
+			double[] env = new double[4];
+			for (int i=0; i<4; i++) {
+				env[i] = readDouble(gpkgGeom, 8+(i*8), littleEndian);
+			}
+			return env;
+		}
 
-		bais.close();
+		// No envelope in the header, so step through the WKB coordinates
+		return WKBEnvelopeReader.read(gpkgGeom, headerLength);
+	}
+	/** Get the envelope as defined in the Geometry header or, if the header does
+	 * not have one, calculate it from the WKB coordinates without constructing the
+	 * Geometry. The result is stored, so subsequent calls to {@link #getEnvelope()} return
+	 * the same value.
+	 * 
+	 * @return The envelope, which will be null ({@link Envelope#isNull()}) for empty geometries.
+	 * @throws IOException If the WKB is invalid
+	 */
+	public Envelope computeEnvelope() throws IOException {
+		if (!envelope.isNull() || geomData==null || isEmpty) return envelope;
 		
-		return this;
+		double[] env = WKBEnvelopeReader.read(geomData, wkbOffset);
+		if (env!=null) envelope.init(env[0], env[1], env[2], env[3]);
+		
+		return envelope;
 	}
 
 	/** Clear all byte data and reset to default values.
@@ -121,6 +207,7 @@ public abstract class GeometryDecoder {
 	 */
 	public void clear() {
 		geomData = null;
+		wkbOffset = 0;
 		gpkgVersion = 0;
 		envelope.setToNull();
 		isEmpty = false;
@@ -0,0 +1,202 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage.geometry;
+
+import java.io.IOException;
+
+import com.augtech.geoapi.geopackage.GeoPackage;
+import com.vividsolutions.jts.geom.CoordinateSequence;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryCollection;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.Polygon;
+import com.vividsolutions.jts.io.ByteOrderValues;
+import com.vividsolutions.jts.io.OutStream;
+
+/** Encodes JTS Geometry to a GeoPackage geometry BLOB (header and WKB).<p>
+ * The size of the BLOB is calculated from the structure of the geometry before
+ * encoding, so the header and WKB are written straight in to a single array of the exact
+ * size with no intermediate buffers or copies. The WKB writers are re-used between
+ * geometries, so an encoder should be kept for the duration of a bulk insert.<p>
+ * The header version, byte order and binary type are taken from {@link GeoPackage#GPKG_GEOM_HEADER_VERSION},
+ * {@link GeoPackage#GPKG_GEOMETRY_LITTLE_ENDIAN} and {@link GeoPackage#GPKG_GEOMETRY_STANDARD}. The
+ * WKB is always written big endian.<p>
+ * An encoder is not thread safe.
+ *
+ * @author Augmented Technologies Ltd.
+ *
+ */
+public class GeometryEncoder {
+	/** The size of the header without an envelope */
+	static final int HEADER_BYTES = 8;
+	/** The size of an XY envelope */
+	static final int ENVELOPE_BYTES = 32;
+
+	private OGCWKBWriter[] writers = new OGCWKBWriter[4];
+	private byte[] buf = null;
+	private int pos = 0;
+	private OutStream outStream = new OutStream() {
+		@Override
+		public void write(byte[] bytes, int len) throws IOException {
+			ensureCapacity(len);
+			System.arraycopy(bytes, 0, buf, pos, len);
+			pos += len;
+		}
+	};
+
+	/** Encode a Geometry to a new GeoPackage geometry BLOB.
+	 *
+	 * @param geom The Geometry to encode. The SRS id is taken from {@link Geometry#getSRID()}
+	 * @param outputDimension How many dimensions to write (2 or 3). JTS does not support 4
+	 * @return A new array holding the encoded geometry
+	 * @throws IOException
+	 */
+	public byte[] encode(Geometry geom, int outputDimension) throws IOException {
+		if (geom==null) throw new IOException("Null Geometry passed");
+
+		if (outputDimension < 2 || outputDimension > 3)
+			throw new IllegalArgumentException("Output dimension must be 2 or 3");
+
+		boolean empty = geom.isEmpty();
+		Envelope envelope = geom.getEnvelopeInternal();
+		/* JTS only supports 2 dimensional envelopes. If the geometry is
+		 * empty then we don't encode an envelope */
+		boolean hasEnvelope = !empty && !envelope.isNull();
+
+		buf = new byte[HEADER_BYTES + (hasEnvelope ? ENVELOPE_BYTES : 0) + getWKBSize(geom, outputDimension)];
+		pos = 0;
+
+		int byteOrder = GeoPackage.GPKG_GEOMETRY_LITTLE_ENDIAN ?
+				ByteOrderValues.LITTLE_ENDIAN : ByteOrderValues.BIG_ENDIAN;
+
+		// 'Magic' and Version
+		buf[pos++] = 'G';
+		buf[pos++] = 'P';
+		buf[pos++] = (byte) GeoPackage.GPKG_GEOM_HEADER_VERSION;
+
+		// Header flags. Bits 6 and 7 are currently reserved and un-used
+		int flags = 0;
+		if (byteOrder==ByteOrderValues.LITTLE_ENDIAN) flags |= 1;
+		if (hasEnvelope) flags |= 1 << 1;// XY envelope
+		if (empty) flags |= 1 << 4;
+		if (GeoPackage.GPKG_GEOMETRY_STANDARD==false) flags |= 1 << 5;// ExtendedGeoPackageBinary
+		buf[pos++] = (byte) flags;
+
+		// SRS
+		writeInt(geom.getSRID(), byteOrder);
+
+		if (hasEnvelope) {
+			writeDouble(envelope.getMinX(), byteOrder);
+			writeDouble(envelope.getMaxX(), byteOrder);
+			writeDouble(envelope.getMinY(), byteOrder);
+			writeDouble(envelope.getMaxY(), byteOrder);
+		}
+
+		// The geometry
+		getWriter(outputDimension).write(geom, outStream);
+
+		byte[] encoded = buf;
+		if (pos!=encoded.length) {
+			// Only if the calculated size was wrong
+			encoded = new byte[pos];
+			System.arraycopy(buf, 0, encoded, 0, pos);
+		}
+		buf = null;
+
+		return encoded;
+	}
+	/** Calculate the number of bytes required to encode a geometry as WKB
+	 * by {@link OGCWKBWriter}
+	 *
+	 * @param geom The geometry
+	 * @param outputDimension How many dimensions will be written (2 or 3)
+	 * @return The size in bytes
+	 */
+	public static int getWKBSize(Geometry geom, int outputDimension) {
+
+		if (geom instanceof Point) {
+			return 5 + getCoordinatesSize( ((Point)geom).getCoordinateSequence(), outputDimension);
+
+		} else if (geom instanceof LineString) {
+			return 9 + getCoordinatesSize( ((LineString)geom).getCoordinateSequence(), outputDimension);
+
+		} else if (geom instanceof Polygon) {
+			Polygon poly = (Polygon) geom;
+			int size = 9 + 4 + getCoordinatesSize(poly.getExteriorRing().getCoordinateSequence(), outputDimension);
+			for (int i=0; i<poly.getNumInteriorRing(); i++) {
+				size += 4 + getCoordinatesSize(poly.getInteriorRingN(i).getCoordinateSequence(), outputDimension);
+			}
+			return size;
+
+		} else if (geom instanceof GeometryCollection) {
+			int size = 9;
+			for (int i=0; i<geom.getNumGeometries(); i++) {
+				size += getWKBSize(geom.getGeometryN(i), outputDimension);
+			}
+			return size;
+		}
+
+		// Unknown types are rejected by the writer
+		return 0;
+	}
+	/** The size of a sequence of coordinates, excluding any count */
+	private static int getCoordinatesSize(CoordinateSequence seq, int outputDimension) {
+		int dim = seq.getDimension() >= 3 && outputDimension >= 3 ? 3 : 2;
+		return seq.size() * dim * 8;
+	}
+	/** Get the (cached) WKB writer for a dimension */
+	private OGCWKBWriter getWriter(int outputDimension) {
+		if (writers[outputDimension]==null)
+			writers[outputDimension] = new OGCWKBWriter(outputDimension);
+		return writers[outputDimension];
+	}
+
+	private void writeInt(int value, int byteOrder) {
+		ensureCapacity(4);
+		if (byteOrder==ByteOrderValues.LITTLE_ENDIAN) {
+			buf[pos] = (byte) value;
+			buf[pos+1] = (byte) (value >> 8);
+			buf[pos+2] = (byte) (value >> 16);
+			buf[pos+3] = (byte) (value >> 24);
+		} else {
+			buf[pos] = (byte) (value >> 24);
+			buf[pos+1] = (byte) (value >> 16);
+			buf[pos+2] = (byte) (value >> 8);
+			buf[pos+3] = (byte) value;
+		}
+		pos += 4;
+	}
+
+	private void writeDouble(double value, int byteOrder) {
+		long bits = Double.doubleToLongBits(value);
+		ensureCapacity(8);
+		for (int i=0; i<8; i++) {
+			int shift = byteOrder==ByteOrderValues.LITTLE_ENDIAN ? i * 8 : (7-i) * 8;
+			buf[pos+i] = (byte) (bits >> shift);
+		}
+		pos += 8;
+	}
+	/** Grow the buffer if the calculated size was too small */
+	private void ensureCapacity(int len) {
+		if (pos + len <= buf.length) return;
+
+		byte[] tmp = new byte[Math.max(buf.length * 2, pos + len)];
+		System.arraycopy(buf, 0, tmp, 0, pos);
+		buf = tmp;
+	}
+}
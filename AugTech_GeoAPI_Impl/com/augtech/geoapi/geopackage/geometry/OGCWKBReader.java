@@ -144,6 +144,24 @@ public class OGCWKBReader {
 		}
 	}
 
+	/**
+	 * Reads a single {@link Geometry} from a byte array, starting at an offset
+	 * within the array.
+	 *
+	 * @param bytes the byte array to read from
+	 * @param offset the index of the first WKB byte
+	 * @return the geometry read
+	 * @throws ParseException if a parse exception occurs
+	 */
+	public Geometry read(byte[] bytes, int offset) throws ParseException  {
+		try {
+			return read(new ByteArrayOffsetInStream(bytes, offset));
+		}
+		catch (IOException ex) {
+			throw new RuntimeException("Unexpected IOException caught: " + ex.getMessage());
+		}
+	}
+
 	/**
 	 * Reads a {@link Geometry} from an {@link InStream).
 	 *
@@ -39,7 +39,7 @@ public class StandardGeometryDecoder extends GeometryDecoder {
 		
 		Geometry geom = null;
 		try {
-			geom = new OGCWKBReader().read( this.geomData );
+			geom = new OGCWKBReader().read( this.geomData, this.wkbOffset );
 		} catch (ParseException e) {
 			e.printStackTrace();
 		}
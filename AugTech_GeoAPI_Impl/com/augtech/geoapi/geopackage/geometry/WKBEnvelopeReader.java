@@ -0,0 +1,139 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage.geometry;
+
+import java.io.IOException;
+
+import com.augtech.geoapi.geopackage.GeoPackage;
+import com.vividsolutions.jts.io.WKBConstants;
+
+/** Calculates the 2D envelope of a WKB geometry by stepping through its
+ * coordinates, without constructing a JTS Geometry.<p>
+ * Both OGC/ISO WKB and PostGIS EWKB are read, as per {@link OGCWKBReader}.
+ * NaN ordinates (as used for empty points) are ignored.
+ *
+ * @author Augmented Technologies Ltd.
+ *
+ */
+public class WKBEnvelopeReader {
+	private byte[] buf;
+	private int pos;
+	private double minX, maxX, minY, maxY;
+	private boolean hasCoords;
+
+	private WKBEnvelopeReader(byte[] buf, int offset) {
+		this.buf = buf;
+		this.pos = offset;
+		minX = minY = Double.POSITIVE_INFINITY;
+		maxX = maxY = Double.NEGATIVE_INFINITY;
+	}
+
+	/** Read the envelope of the WKB geometry starting at an offset within an array
+	 *
+	 * @param wkb The array containing the WKB
+	 * @param offset The index of the first WKB byte
+	 * @return The envelope as minx, maxx, miny, maxy or <code>Null</code> if the geometry
+	 * has no coordinates.
+	 * @throws IOException If the WKB is invalid or truncated
+	 */
+	public static double[] read(byte[] wkb, int offset) throws IOException {
+		WKBEnvelopeReader r = new WKBEnvelopeReader(wkb, offset);
+		try {
+			r.readGeometry();
+		} catch (ArrayIndexOutOfBoundsException e) {
+			throw new IOException("WKB is truncated");
+		}
+
+		if (!r.hasCoords) return null;
+
+		return new double[] {r.minX, r.maxX, r.minY, r.maxY};
+	}
+
+	private void readGeometry() throws IOException {
+		boolean littleEndian = buf[pos++] == WKBConstants.wkbNDR;
+		int typeInt = GeometryDecoder.readInt(buf, pos, littleEndian);
+		pos += 4;
+
+		int geometryType = 1;
+		int dimension = 2;
+		if ((typeInt & 0xE0000000) == 0) {
+
+			// OGC/ISO
+			geometryType = typeInt % 1000;
+			int dim = typeInt / 1000;
+			dimension = dim==3 ? 4 : dim>0 ? 3 : 2;
+
+		} else {
+
+			if (GeoPackage.MODE_STRICT)
+				throw new IOException("EWKB found in GeoPackage");
+
+			// PostGIS EWKB
+			geometryType = typeInt & 0xff;
+			if ((typeInt & 0x80000000) != 0) dimension++;
+			if ((typeInt & 0x40000000) != 0) dimension++;
+			if ((typeInt & 0x20000000) != 0) pos += 4;// SRID
+		}
+
+		switch (geometryType) {
+		case WKBConstants.wkbPoint :
+			readCoordinates(1, dimension, littleEndian);
+			break;
+		case WKBConstants.wkbLineString :
+			readCoordinates(readCount(littleEndian), dimension, littleEndian);
+			break;
+		case WKBConstants.wkbPolygon :
+			int numRings = readCount(littleEndian);
+			for (int i=0; i<numRings; i++) {
+				readCoordinates(readCount(littleEndian), dimension, littleEndian);
+			}
+			break;
+		case WKBConstants.wkbMultiPoint :
+		case WKBConstants.wkbMultiLineString :
+		case WKBConstants.wkbMultiPolygon :
+		case WKBConstants.wkbGeometryCollection :
+			int numGeom = readCount(littleEndian);
+			for (int i=0; i<numGeom; i++) {
+				readGeometry();
+			}
+			break;
+		default:
+			throw new IOException("Unknown WKB type " + geometryType);
+		}
+	}
+
+	private int readCount(boolean littleEndian) {
+		int count = GeometryDecoder.readInt(buf, pos, littleEndian);
+		pos += 4;
+		return count;
+	}
+
+	private void readCoordinates(int count, int dimension, boolean littleEndian) {
+		for (int i=0; i<count; i++) {
+			double x = GeometryDecoder.readDouble(buf, pos, littleEndian);
+			double y = GeometryDecoder.readDouble(buf, pos+8, littleEndian);
+			pos += 8 * dimension;
+
+			if (Double.isNaN(x) || Double.isNaN(y)) continue;
+
+			if (x < minX) minX = x;
+			if (x > maxX) maxX = x;
+			if (y < minY) minY = y;
+			if (y > maxY) maxY = y;
+			hasCoords = true;
+		}
+	}
+}
@@ -20,8 +20,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 
 import org.opengis.feature.simple.SimpleFeature;
@@ -38,12 +41,17 @@ import com.augtech.geoapi.feature.type.GeometryDescriptorImpl;
 import com.augtech.geoapi.feature.type.GeometryTypeImpl;
 import com.augtech.geoapi.feature.type.SimpleFeatureTypeImpl;
 import com.augtech.geoapi.geopackage.DateUtil;
+import com.augtech.geoapi.geopackage.FeatureReader;
 import com.augtech.geoapi.geopackage.GeoPackage;
+import com.augtech.geoapi.geopackage.GpkgCatalog;
+import com.augtech.geoapi.geopackage.GpkgColumnarRecords;
 import com.augtech.geoapi.geopackage.GpkgField;
 import com.augtech.geoapi.geopackage.GpkgRecords;
 import com.augtech.geoapi.geopackage.GpkgTable;
 import com.augtech.geoapi.geopackage.ICursor;
 import com.augtech.geoapi.geopackage.ISQLDatabase;
+import com.augtech.geoapi.geopackage.ISQLStatement;
+import com.augtech.geoapi.geopackage.geometry.GeometryDecoder;
 import com.augtech.geoapi.geopackage.geometry.StandardGeometryDecoder;
 import com.augtech.geoapi.geopackage.table.GpkgDataColumnConstraint.DataColumnConstraint;
 import com.augtech.geoapi.geopackage.table.GpkgExtensions.Extension;
@@ -132,6 +140,7 @@ public class FeaturesTable extends GpkgTable {
 		if (isTableInDB(geoPackage)) {
 			geoPackage.log.log(Level.WARNING, "Replacing table "+tableName);
 			geoPackage.getDatabase().execSQL("DROP table ["+tableName+"]");
+			geoPackage.getCatalog().invalidate(GpkgCatalog.SQLITE_MASTER);
 		}
 		
 		// Get and test Geometry type is valid
@@ -260,9 +269,8 @@ public class FeaturesTable extends GpkgTable {
 				bbox.getMaxY(),
 				srsID );
 
-		/* Create spatial index? 
-		 * TODO: This is un-tested and the functions in the trigger definitions are not yet
-		 * implemented */
+		/* Create spatial index? The ST_* functions used by the triggers must be
+		 * available on the database connection (see ISQLFunctions) */
 		boolean doSpatialIndex = GeoPackage.CREATE_RTREE_FOR_FEATURES && geoPackage.getDatabase().hasRTreeEnabled();
 		String[] rTreeDefs = new String[2 + GpkgTriggers.SPATIAL_TRIGGERS.length];
 		if (doSpatialIndex) {
@@ -303,11 +311,114 @@ public class FeaturesTable extends GpkgTable {
 		
 		boolean success = geoPackage.getDatabase().execSQLWithRollback(statements);
 		
+		GpkgCatalog catalog = geoPackage.getCatalog();
+		catalog.invalidate(GpkgCatalog.SQLITE_MASTER);
+		catalog.invalidate(GpkgContents.TABLE_NAME);
+		catalog.invalidate(GpkgGeometryColumns.TABLE_NAME);
+		catalog.invalidate(GpkgExtensions.TABLE_NAME);
+		catalog.invalidateCount(tableName);
+		
 		// Get the information back from DB
 		getContents();
 		
 		return success;
 	}
+	/** Create (or re-build) the R*Tree spatial index on this table's geometry column
+	 * and register the 'gpkg_rtree_index' extension in gpkg_extensions.<p>
+	 * The geometry column is read once, in pages of {@link GeoPackage#MAX_RECORDS_PER_CURSOR},
+	 * taking the envelope from the GeoPackage geometry header (the WKB is only decoded
+	 * if the header has no envelope). The index is loaded within a single transaction 
+	 * which is rolled back if any part fails.
+	 * 
+	 * @return The number of geometries indexed
+	 * @throws Exception If the underlying database does not have R*Tree support, the
+	 * table has no geometry column definition or a geometry could not be indexed.
+	 */
+	public int createSpatialIndex() throws Exception {
+		ISQLDatabase db = geoPackage.getDatabase();
+		if (!db.hasRTreeEnabled())
+			throw new Exception("R*Tree indexing is not available on this database");
+		
+		String column = getGeometryInfo().getColumnName();
+		String pk = getPrimaryKey(geoPackage);
+		String idxTable = "rtree_"+tableName+"_"+column;
+		
+		// Does the R*Tree table already exist?
+		boolean idxExists = geoPackage.getCatalog().isTableInDB(idxTable);
+		
+		long startTime = System.currentTimeMillis();
+		int indexed = 0;
+		boolean success = false;
+		db.beginTransaction();
+		try {
+			
+			if (idxExists) {
+				db.execSQL("DELETE FROM ["+idxTable+"]");
+			} else {
+				db.execSQL(String.format("CREATE VIRTUAL TABLE [%s] USING "+
+						"rtree(id, minx, maxx, miny, maxy)", idxTable));
+				for (int i=0; i < GpkgTriggers.SPATIAL_TRIGGERS.length; i++) {
+					db.execSQL( MessageFormat.format(GpkgTriggers.SPATIAL_TRIGGERS[i], tableName, column, pk) );
+				}
+			}
+			
+			if (!getGeometryInfo().hasSpatialIndex()) {
+				db.execSQL(String.format("INSERT INTO %s (table_name, column_name, extension_name, definition, scope) VALUES "+
+						"('%s', '%s', 'gpkg_rtree_index', 'GeoPackage 1.0 Specification Annex M', 'write-only');",
+						GpkgExtensions.TABLE_NAME, tableName, column) );
+			}
+			
+			ISQLStatement insert = db.prepare("INSERT INTO ["+idxTable+"] VALUES (?,?,?,?,?)");
+			ISQLStatement page = db.prepare(String.format(
+					"SELECT %s,[%s] FROM [%s] WHERE %s > ? ORDER BY %s LIMIT ?", pk, column, tableName, pk, pk));
+			
+			int lastPK = Integer.MIN_VALUE;
+			boolean hasRecords = true;
+			while (hasRecords) {
+				
+				page.bindInt(1, lastPK);
+				page.bindInt(2, GeoPackage.MAX_RECORDS_PER_CURSOR);
+				ICursor cPage = page.executeQuery();
+				
+				hasRecords = false;
+				while (cPage.moveToNext()) {
+					hasRecords = true;
+					lastPK = cPage.getInt(0);
+					
+					double[] env = GeometryDecoder.readEnvelope( cPage.getBlob(1) );
+					if (env==null) continue;// Null or empty geometries are not indexed
+					
+					insert.bindInt(1, lastPK);
+					for (int i=0; i<4; i++) insert.bindDouble(i+2, env[i]);
+					// Failures are not thrown by all implementations, so check a row was inserted
+					if (insert.executeUpdate() < 1) {
+						cPage.close();
+						page.close();
+						insert.close();
+						throw new Exception("Unable to index feature "+lastPK+" in "+idxTable);
+					}
+					indexed++;
+				}
+				cPage.close();
+			}
+			
+			page.close();
+			insert.close();
+			success = true;
+			
+		} finally {
+			db.endTransaction(success);
+			geoPackage.getCatalog().invalidate(GpkgCatalog.SQLITE_MASTER);
+			geoPackage.getCatalog().invalidate(GpkgExtensions.TABLE_NAME);
+		}
+		
+		geometryInfo.spatialIndex = true;
+		
+		geoPackage.log.log(Level.INFO, String.format("Spatial index on %s built from %s geometries in %s seconds",
+				tableName, indexed, (System.currentTimeMillis()-startTime)/1000) );
+		
+		return indexed;
+	}
 	/** Get a constructed SimpleFeatureType based on all the available
 	 * details for this table.
 	 * 
@@ -315,6 +426,30 @@ public class FeaturesTable extends GpkgTable {
 	 * @throws Exception 
 	 */
 	public SimpleFeatureType getSchema() throws Exception {
+		return getSchema(null);
+	}
+	/** Get a constructed SimpleFeatureType holding only the supplied properties
+	 * of this table, for reading a subset of the columns.
+	 * 
+	 * @param propertyNames The names of the attributes to include. The geometry is only 
+	 * included if its column is named. If <code>Null</code> all attributes are included.
+	 * @return
+	 * @throws Exception 
+	 * @throws IllegalArgumentException If a property is not a column on this table
+	 * @see #getSelect(String[])
+	 */
+	public SimpleFeatureType getSchema(String[] propertyNames) throws Exception {
+		
+		Set<String> wanted = null;
+		if (propertyNames!=null) {
+			getContents();
+			wanted = new HashSet<String>();
+			for (String name : propertyNames) {
+				if (getField(name)==null)
+					throw new IllegalArgumentException("Property "+name+" does not exist in "+tableName);
+				wanted.add(name);
+			}
+		}
 
 		/* Build the geometry descriptor for this SimpleFeatureType. Internally we're going to use
 		 * Proj.4 for any projection/ transformation, therefore not (currently) concerned with the
@@ -346,6 +481,10 @@ public class FeaturesTable extends GpkgTable {
 				featureFieldName = ff.getFieldName();
 				continue;
 				
+			} else if (wanted!=null && !wanted.contains(ff.getFieldName())) {
+				
+				continue;
+				
 			} else {
 				
 				binding = ff.getFieldName().equals(geomInfo.getColumnName()) ? Geometry.class : geoPackage.decodeType( ff.getFieldType() );
@@ -368,6 +507,60 @@ public class FeaturesTable extends GpkgTable {
 		
 		return featureType;
 	}
+	/** Get the supplied property names less the geometry column, for reading
+	 * features without their geometry.
+	 * 
+	 * @param propertyNames The names of the attributes, or <code>Null</code> for all
+	 * attributes on this table.
+	 * @return The names, excluding the geometry column and feature ID.
+	 * @throws Exception
+	 */
+	public String[] getNonGeometryNames(String[] propertyNames) throws Exception {
+		String geomColumn = getGeometryInfo().getColumnName();
+		ArrayList<String> names = new ArrayList<String>();
+		
+		if (propertyNames==null) {
+			String fid = getFeatureIDField();
+			for (GpkgField gf : getFields()) {
+				if (gf.getFieldName().equals(geomColumn) || gf.getFieldName().equals(fid)) continue;
+				names.add( gf.getFieldName() );
+			}
+		} else {
+			for (String name : propertyNames) {
+				if (!name.equals(geomColumn)) names.add(name);
+			}
+		}
+		
+		return names.toArray(new String[names.size()]);
+	}
+	/** Build a select statement on this table for only the supplied properties. The primary
+	 * key and feature ID columns are always selected, as these are required to page
+	 * through the table and to build each feature's ID.
+	 * 
+	 * @param propertyNames The names of the columns to select. If <code>Null</code> all
+	 * columns are selected.
+	 * @return The statement, up to and including the table name (SELECT ... FROM [table])
+	 * @throws Exception
+	 * @see #getSchema(String[])
+	 */
+	public String getSelect(String[] propertyNames) throws Exception {
+		if (propertyNames==null) return "SELECT * FROM ["+tableName+"]";
+		
+		Set<String> columns = new LinkedHashSet<String>();
+		columns.add( getPrimaryKey(geoPackage) );
+		String fid = getFeatureIDField();
+		if (getField(fid)!=null) columns.add( fid );
+		for (String name : propertyNames) columns.add(name);
+		
+		StringBuffer sb = new StringBuffer("SELECT ");
+		for (String c : columns) {
+			sb.append("[").append(c).append("],");
+		}
+		sb.setLength(sb.length()-1);
+		sb.append(" FROM [").append(tableName).append("]");
+		
+		return sb.toString();
+	}
 	/** Get a list of {@link SimpleFeature} from the GeoPackage by specifying a where clause
 	 * (for example {@code featureId='pipe.1234'} or {@code id=1234} ).
 	 * This method calls the {@link GeoPackage#getFeatures(String, String, com.augtech.geoapi.geopackage.geometry.GeometryDecoder)}
@@ -379,6 +572,44 @@ public class FeaturesTable extends GpkgTable {
 	public List<SimpleFeature> getFeatures(String strWhere) throws Exception {
 		return geoPackage.getFeatures(this.tableName, strWhere, new StandardGeometryDecoder());
 	}
+	/** Get a {@link FeatureReader} over the features in this table matching a where clause.
+	 * Features are decoded one row at a time as the reader is iterated, using a
+	 * {@link StandardGeometryDecoder}. The reader must be closed once finished with.
+	 *
+	 * @param strWhere The where clause, or <code>Null</code> for all features.
+	 * @return A new FeatureReader
+	 * @throws Exception
+	 * @see GeoPackage#getFeatureReader(String, String, com.augtech.geoapi.geopackage.geometry.GeometryDecoder)
+	 */
+	public FeatureReader getFeatureReader(String strWhere) throws Exception {
+		return geoPackage.getFeatureReader(this.tableName, strWhere, new StandardGeometryDecoder());
+	}
+	/** Get a list of {@link SimpleFeature} matching a where clause holding only the supplied
+	 * properties. Only those columns are read from the table, using a {@link StandardGeometryDecoder}.
+	 * 
+	 * @param strWhere The where clause, or <code>Null</code> for all features.
+	 * @param propertyNames The names of the attributes to read (including the geometry column
+	 * if required), or <code>Null</code> for all.
+	 * @return A List of {@link SimpleFeature}'s matching the where clause.
+	 * @throws Exception
+	 * @see GeoPackage#getFeatures(String, String, String[], com.augtech.geoapi.geopackage.geometry.GeometryDecoder)
+	 */
+	public List<SimpleFeature> getFeatures(String strWhere, String[] propertyNames) throws Exception {
+		return geoPackage.getFeatures(this.tableName, strWhere, propertyNames, new StandardGeometryDecoder());
+	}
+	/** Get a {@link FeatureReader} over the features in this table matching a where clause,
+	 * holding only the supplied properties. The reader must be closed once finished with.
+	 *
+	 * @param strWhere The where clause, or <code>Null</code> for all features.
+	 * @param propertyNames The names of the attributes to read (including the geometry column
+	 * if required), or <code>Null</code> for all.
+	 * @return A new FeatureReader
+	 * @throws Exception
+	 * @see GeoPackage#getFeatureReader(String, String, String[], com.augtech.geoapi.geopackage.geometry.GeometryDecoder)
+	 */
+	public FeatureReader getFeatureReader(String strWhere, String[] propertyNames) throws Exception {
+		return geoPackage.getFeatureReader(this.tableName, strWhere, propertyNames, new StandardGeometryDecoder());
+	}
 	/** Issue a raw query on this table using a where clause
 	 * 
 	 * @param strWhere The where clause excluding the 'where'
@@ -487,29 +718,33 @@ public class FeaturesTable extends GpkgTable {
 		
 		geometryInfo = new GeometryInfo();
 		
+		GpkgCatalog catalog = geoPackage.getCatalog();
+		
 		// Geometry column details
-		GpkgRecords gRecord = geoPackage.getSystemTable(GpkgGeometryColumns.TABLE_NAME)
-				.query(geoPackage, "table_name='"+tableName+"';");
+		GpkgColumnarRecords gRecord = catalog.getRecords(GpkgGeometryColumns.TABLE_NAME);
+		int gRow = catalog.getRow(GpkgGeometryColumns.TABLE_NAME, tableName);
 		
-		if (gRecord==null)
+		if (gRow==-1) {
+			geometryInfo = null;
 			throw new Exception("No geometry field definition for "+tableName);
+		}
 		
-		geometryInfo.columnName = gRecord.getFieldString(0, "column_name");
-		geometryInfo.geometryTypeName = gRecord.getFieldString(0, "geometry_type_name");
-		geometryInfo.srsID = gRecord.getFieldInt(0, "srs_id");
-		int z = gRecord.getFieldInt(0, "z");
+		geometryInfo.columnName = gRecord.getFieldString(gRow, "column_name");
+		geometryInfo.geometryTypeName = gRecord.getFieldString(gRow, "geometry_type_name");
+		geometryInfo.srsID = gRecord.getFieldInt(gRow, "srs_id");
+		int z = gRecord.getFieldInt(gRow, "z");
 		if (z!=-1) geometryInfo.z = z;
-		int m = gRecord.getFieldInt(0, "m");
+		int m = gRecord.getFieldInt(gRow, "m");
 		if (m!=-1) geometryInfo.m = m;
 		
 		// Check and get the SRID is defined in GeoPackage
-		GpkgRecords sRecord = geoPackage.getSystemTable(GpkgSpatialRefSys.TABLE_NAME)
-				.query(geoPackage, "srs_id="+geometryInfo.srsID);
-		if (sRecord==null || sRecord.get(0)==null)
+		GpkgColumnarRecords sRecord = catalog.getRecords(GpkgSpatialRefSys.TABLE_NAME);
+		int sRow = catalog.getRow(GpkgSpatialRefSys.TABLE_NAME, ""+geometryInfo.srsID);
+		if (sRow==-1)
 			throw new Exception("SRS "+geometryInfo.srsID+" not defined in GeoPackage");
 		
-		geometryInfo.organization = sRecord.getFieldString(0, "organization");
-		geometryInfo.definition = sRecord.getFieldString(0, "definition");
+		geometryInfo.organization = sRecord.getFieldString(sRow, "organization");
+		geometryInfo.definition = sRecord.getFieldString(sRow, "definition");
 		
 		// Check extensions for spatial index
 		List<Extension> ext = getExtensionInfo(geoPackage);
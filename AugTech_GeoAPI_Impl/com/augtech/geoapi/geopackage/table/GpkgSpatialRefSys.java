@@ -80,6 +80,7 @@ public class GpkgSpatialRefSys extends GpkgTable {
 		String sql = String.format(STMT_INSERT, name, srsID, organization, srsID, definition, description);
 		
 		geoPackage.getDatabase().execSQL(sql);
+		geoPackage.getCatalog().invalidate(TABLE_NAME);
 		
 	}
 }
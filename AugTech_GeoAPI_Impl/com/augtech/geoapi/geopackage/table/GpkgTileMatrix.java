@@ -86,7 +86,10 @@ public class GpkgTileMatrix extends GpkgTable {
 
 		}
 		
-		return geoPackage.getDatabase().execSQLWithRollback(stmts);
+		boolean success = geoPackage.getDatabase().execSQLWithRollback(stmts);
+		geoPackage.getCatalog().invalidate(TABLE_NAME);
+		
+		return success;
 	}
 
 }
@@ -148,7 +148,7 @@ public class GpkgTriggers {
    		Actions   : Remove record from rtree for old rowid
                Insert record into rtree for new rowid  */
 	public static final String CREATE_TRIGGER_SPATIAL_UPDATE3 = "CREATE TRIGGER rtree_{0}_{1}_update3 AFTER UPDATE OF {1} ON {0}" +
-			" WHEN OLD.{2} != NEW.{2} AND (NEW.{2} NOTNULL AND NOT ST_IsEmpty(NEW.{2}))" +
+			" WHEN OLD.{2} != NEW.{2} AND (NEW.{1} NOTNULL AND NOT ST_IsEmpty(NEW.{1}))" +
 			" BEGIN DELETE FROM rtree_{0}_{1} WHERE id = OLD.{2};" +
 			" INSERT OR REPLACE INTO rtree_{0}_{1} VALUES (" +
 			" NEW.{2}, ST_MinX(NEW.{1}), ST_MaxX(NEW.{1}), ST_MinY(NEW.{1}), ST_MaxY(NEW.{1})"+
@@ -16,10 +16,13 @@
 package com.augtech.geoapi.geopackage.table;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Level;
 
 import org.opengis.feature.simple.SimpleFeatureType;
@@ -36,8 +39,15 @@ import com.augtech.geoapi.feature.type.SimpleFeatureTypeImpl;
 import com.augtech.geoapi.geometry.BoundingBoxImpl;
 import com.augtech.geoapi.geopackage.DateUtil;
 import com.augtech.geoapi.geopackage.GeoPackage;
+import com.augtech.geoapi.geopackage.GeoPackage.JavaType;
+import com.augtech.geoapi.geopackage.GpkgCatalog;
+import com.augtech.geoapi.geopackage.GpkgColumnarRecords;
 import com.augtech.geoapi.geopackage.GpkgField;
 import com.augtech.geoapi.geopackage.GpkgRecords;
+import com.augtech.geoapi.geopackage.ICursor;
+import com.augtech.geoapi.geopackage.ISQLDatabase;
+import com.augtech.geoapi.geopackage.ISQLStatement;
+import com.augtech.geoapi.geopackage.ITileCallback;
 import com.augtech.geoapi.geopackage.GpkgTable;
 import com.augtech.geoapi.referncing.CoordinateReferenceSystemImpl;
 import com.vividsolutions.jts.geom.Geometry;
@@ -46,6 +56,8 @@ import com.vividsolutions.jts.geom.Geometry;
 public class TilesTable extends GpkgTable {
 	GeoPackage geoPackage = null;
 	private TileMatrixInfo tileMatrixInfo = null;
+	/** Select for a single tile by reference */
+	private String readTileSQL = null;
 	
 	/**
 	 * 
@@ -56,6 +68,7 @@ public class TilesTable extends GpkgTable {
 		super(tableName, null, null);
 		super.tableType = GpkgTable.TABLE_TYPE_TILES;
 		this.geoPackage = geoPackage;
+		this.readTileSQL = "SELECT tile_data FROM ["+tableName+"] WHERE zoom_level=? AND tile_column=? AND tile_row=?";
 	}
 
 	/** Create a new user Tiles table in the GeoPackage suitable for 'Slippy' map tiles
@@ -103,15 +116,14 @@ public class TilesTable extends GpkgTable {
 		if (isTableInDB(geoPackage)) {
 			geoPackage.log.log(Level.WARNING, "Replacing table "+tableName);
 			geoPackage.getDatabase().execSQL("DROP table ["+tableName+"]");
+			geoPackage.getCatalog().invalidate(GpkgCatalog.SQLITE_MASTER);
+			geoPackage.getTileCache().invalidate(tableName);
 		}
 		
 		// Check SRS exists in gpkg_spatial_ref_sys table
 		int srsID = Integer.parseInt( bbox.getCoordinateReferenceSystem().getName().getCode() );
 
-		GpkgRecords records = geoPackage.getSystemTable(GpkgSpatialRefSys.TABLE_NAME)
-								.query(geoPackage, "srs_id="+srsID);
-
-		if (records.getFieldInt(0, "srs_id")!=srsID) 
+		if (!geoPackage.isSRSLoaded(""+srsID)) 
 			throw new Exception("SRS "+srsID+" does not exist in the gpkg_spatial_ref_sys table");
 		
 		// Create this table
@@ -164,6 +176,13 @@ public class TilesTable extends GpkgTable {
 					tilePixelsXY, pixelDistAtMaxZoomX, pixelDistAtMaxZoomY);
 		}
 		
+		GpkgCatalog catalog = geoPackage.getCatalog();
+		catalog.invalidate(GpkgCatalog.SQLITE_MASTER);
+		catalog.invalidate(GpkgContents.TABLE_NAME);
+		catalog.invalidate(GpkgTileMatrixSet.TABLE_NAME);
+		catalog.invalidate(GpkgTileMatrix.TABLE_NAME);
+		catalog.invalidateCount(tableName);
+		
 		// This will also read back the core details.
 		getTileMatrixInfo();
 		
@@ -180,6 +199,84 @@ public class TilesTable extends GpkgTable {
 		return super.query(geoPackage, strWhere);
 	}
 
+	/** Read the image data for a single tile.<p>
+	 * This only selects the tile_data column by the table's unique (zoom_level, tile_column, tile_row)
+	 * index using a prepared statement, which is cached by the {@link ISQLDatabase} between calls. The
+	 * table and tile matrix definitions are not read, nor are the tile reference values validated.
+	 * 
+	 * @param zoom The zoom level
+	 * @param tileColumn The column ID (x)
+	 * @param tileRow The row ID (y)
+	 * @return The image data or <code>Null</code> if there is no matching tile
+	 */
+	public byte[] readTile(int zoom, int tileColumn, int tileRow) {
+		ISQLStatement stmt = geoPackage.getDatabase().prepare(readTileSQL);
+		ICursor cur = null;
+		try {
+			stmt.bindInt(1, zoom);
+			stmt.bindInt(2, tileColumn);
+			stmt.bindInt(3, tileRow);
+			
+			cur = stmt.executeQuery();
+			return cur.moveToNext() ? cur.getBlob(0) : null;
+		} finally {
+			if (cur!=null) cur.close();
+			stmt.close();
+		}
+	}
+	/** Read all tiles within a range of columns and rows at a single zoom level, passing
+	 * each tile to a callback as it is read. Only the tile reference and data are selected
+	 * and no features are constructed.
+	 * 
+	 * @param zoom The zoom level
+	 * @param minColumn The first column (inclusive)
+	 * @param maxColumn The last column (inclusive)
+	 * @param minRow The first row (inclusive)
+	 * @param maxRow The last row (inclusive)
+	 * @param centreFirst If True, the tiles are ordered by their distance from the centre
+	 * of the range so the centre of a view can be drawn first. Otherwise the order is undefined.
+	 * @param callback The callback to receive each tile
+	 * @return The number of tiles passed to the callback
+	 */
+	public int readTiles(int zoom, int minColumn, int maxColumn, int minRow, int maxRow, 
+			boolean centreFirst, ITileCallback callback) {
+		
+		StringBuffer sql = new StringBuffer();
+		sql.append("SELECT tile_column, tile_row, tile_data FROM [").append(tableName).append("]")
+			.append(" WHERE zoom_level=? AND tile_column BETWEEN ? AND ? AND tile_row BETWEEN ? AND ?");
+		if (centreFirst) 
+			sql.append(" ORDER BY (tile_column-?)*(tile_column-?) + (tile_row-?)*(tile_row-?)");
+		
+		ISQLStatement stmt = geoPackage.getDatabase().prepare(sql.toString());
+		ICursor cur = null;
+		int numTiles = 0;
+		try {
+			stmt.bindInt(1, zoom);
+			stmt.bindInt(2, minColumn);
+			stmt.bindInt(3, maxColumn);
+			stmt.bindInt(4, minRow);
+			stmt.bindInt(5, maxRow);
+			if (centreFirst) {
+				double centreCol = (minColumn + maxColumn) / 2.0;
+				double centreRow = (minRow + maxRow) / 2.0;
+				stmt.bindDouble(6, centreCol);
+				stmt.bindDouble(7, centreCol);
+				stmt.bindDouble(8, centreRow);
+				stmt.bindDouble(9, centreRow);
+			}
+			
+			cur = stmt.executeQuery();
+			while (cur.moveToNext()) {
+				numTiles++;
+				if (!callback.onTile(zoom, cur.getInt(0), cur.getInt(1), cur.getBlob(2))) break;
+			}
+		} finally {
+			if (cur!=null) cur.close();
+			stmt.close();
+		}
+		
+		return numTiles;
+	}
 	/**
 	 * @return the BoundingBox from GpkgContents
 	 */
@@ -251,44 +348,51 @@ public class TilesTable extends GpkgTable {
 		// Get the core details
 		super.getContents(geoPackage);
 		
-		// Tile Matrix column details
-		GpkgRecords gRecords = geoPackage.getSystemTable(GpkgTileMatrix.TABLE_NAME)
-				.query(geoPackage, "table_name='"+tableName+"';");
-		
-		if (gRecords==null)
-			throw new Exception("No tile matrix definition for "+tableName);
-		
-		Map<Integer, Collection<GpkgField>> tm = new HashMap<Integer, Collection<GpkgField>>();
-		for (int i=0; i<gRecords.size(); i++) {
-			
-			tm.put(	gRecords.getFieldInt(i, "zoom_level"), gRecords.getFields(i) );
-		}
+		GpkgCatalog catalog = geoPackage.getCatalog();
 		
 		// Get bounds from tile_matrix_set
-		gRecords = geoPackage.getSystemTable(GpkgTileMatrixSet.TABLE_NAME)
-						.query(geoPackage, "table_name='"+tableName+"';");
+		GpkgColumnarRecords tms = catalog.getRecords(GpkgTileMatrixSet.TABLE_NAME);
+		int tmsRow = catalog.getRow(GpkgTileMatrixSet.TABLE_NAME, tableName);
+		if (tmsRow==-1)
+			throw new Exception("Table "+tableName+" not defined in "+GpkgTileMatrixSet.TABLE_NAME);
 		
 		BoundingBox tmBox = new BoundingBoxImpl(
-				gRecords.getFieldDouble(0,"min_x"),
-				gRecords.getFieldDouble(0,"max_x"),
-				gRecords.getFieldDouble(0,"min_y"),
-				gRecords.getFieldDouble(0,"max_y"),
-				new CoordinateReferenceSystemImpl(""+gRecords.getFieldInt(0, "srs_id"))
+				tms.getFieldDouble(tmsRow,"min_x"),
+				tms.getFieldDouble(tmsRow,"max_x"),
+				tms.getFieldDouble(tmsRow,"min_y"),
+				tms.getFieldDouble(tmsRow,"max_y"),
+				new CoordinateReferenceSystemImpl(""+tms.getFieldInt(tmsRow, "srs_id"))
 				);
 
+		// Tile Matrix details, one record per zoom level
+		int[] tmRows = catalog.getRows(GpkgTileMatrix.TABLE_NAME, tableName);
+		if (tmRows==null) tmRows = new int[]{0, 0};
 		
-		tileMatrixInfo = new TileMatrixInfo(tm, tmBox);
+		tileMatrixInfo = new TileMatrixInfo(catalog.getRecords(GpkgTileMatrix.TABLE_NAME), 
+				tmRows[0], tmRows[1], tmBox);
 		
 		return tileMatrixInfo;
 	}
-	/** An object to hold Tile Matrix information about this table
-	 * 
+	/** An object to hold Tile Matrix information about this table.<p>
+	 * The gpkg_tile_matrix values are read in to arrays indexed by zoom level when
+	 * created, so no values are parsed once constructed. Tile references are 1-based, 
+	 * with column 1, row 1 being the top left tile of the tile matrix set's bounding box. The
+	 * calculations only use the tile matrix set bounds and pixel sizes, so work in any
+	 * CRS.
 	 *
 	 */
 	public class TileMatrixInfo {
-		private Map<Integer, Collection<GpkgField>> matFields = new HashMap<Integer, Collection<GpkgField>>();
-		int maxZoom = 1;
+		private int minZoom = -1;
+		private int maxZoom = -1;
 		BoundingBox bbox = null;
+		/* Per zoom level values, indexed by zoom */
+		private boolean[] defined;
+		private int[] matrixWidth;
+		private int[] matrixHeight;
+		private int[] tileWidth;
+		private int[] tileHeight;
+		private double[] pixelXSize;
+		private double[] pixelYSize;
 		
 		/** Create a new TileMatrixInfo.
 		 * 
@@ -296,35 +400,146 @@ public class TilesTable extends GpkgTable {
 		 * @param bbox The extents of the TileMatrixSet
 		 */
 		public TileMatrixInfo(Map<Integer, Collection<GpkgField>> matFields, BoundingBox bbox) {
-			this.matFields = matFields;
-			int z = 0;
-			for (int t=0; t < matFields.keySet().size(); t++) if (t>z) z=t;
 			this.bbox = bbox;
+			
+			allocate( matFields.keySet() );
+			
+			for (Map.Entry<Integer, Collection<GpkgField>> e : matFields.entrySet()) {
+				int z = e.getKey();
+				if (z<0) continue;
+				defined[z] = true;
+				
+				for (GpkgField gf : e.getValue()) {
+					// Leave NULL values at their defaults
+					if (gf.getValue()!=null)
+						setValue(z, gf.getFieldName(), toDouble( gf.getValue() ));
+				}
+			}
+		}
+		/** Create a new TileMatrixInfo from the gpkg_tile_matrix records for a table
+		 * 
+		 * @param matrix The gpkg_tile_matrix records, one per zoom level
+		 * @param bbox The extents of the TileMatrixSet
+		 */
+		public TileMatrixInfo(GpkgColumnarRecords matrix, BoundingBox bbox) {
+			this(matrix, 0, matrix.size(), bbox);
+		}
+		/** Create a new TileMatrixInfo from a range of gpkg_tile_matrix records, such as
+		 * those held by the {@link GpkgCatalog} for a table
+		 * 
+		 * @param matrix The gpkg_tile_matrix records, one per zoom level
+		 * @param fromRecord The first record for this table (inclusive)
+		 * @param toRecord The last record for this table (exclusive)
+		 * @param bbox The extents of the TileMatrixSet
+		 */
+		public TileMatrixInfo(GpkgColumnarRecords matrix, int fromRecord, int toRecord, BoundingBox bbox) {
+			this.bbox = bbox;
+			
+			int zoomIdx = matrix==null ? -1 : matrix.getFieldIdx("zoom_level");
+			Set<Integer> zooms = new TreeSet<Integer>();
+			for (int r=fromRecord; r<toRecord; r++) {
+				zooms.add( matrix.getInt(r, zoomIdx) );
+			}
+			allocate( zooms );
+			
+			for (int r=fromRecord; r<toRecord; r++) {
+				int z = matrix.getInt(r, zoomIdx);
+				if (z<0) continue;
+				defined[z] = true;
+				
+				for (int c=0; c<matrix.getColumnCount(); c++) {
+					if (!matrix.isNull(r, c) && matrix.getJavaType(c)!=JavaType.STRING)
+						setValue(z, matrix.getColumnName(c), matrix.getDouble(r, c));
+				}
+			}
+		}
+		/** Create the per zoom arrays for the supplied zoom levels */
+		private void allocate(Set<Integer> zooms) {
+			for (int z : zooms) {
+				if (z<0) continue;
+				if (z>maxZoom) maxZoom = z;
+				if (minZoom==-1 || z<minZoom) minZoom = z;
+			}
+			
+			int len = maxZoom+1;
+			defined = new boolean[len];
+			matrixWidth = new int[len];
+			matrixHeight = new int[len];
+			tileWidth = new int[len];
+			tileHeight = new int[len];
+			pixelXSize = new double[len];
+			pixelYSize = new double[len];
+			Arrays.fill(matrixWidth, -1);
+			Arrays.fill(matrixHeight, -1);
+			Arrays.fill(tileWidth, -1);
+			Arrays.fill(tileHeight, -1);
+			Arrays.fill(pixelXSize, Double.NaN);
+			Arrays.fill(pixelYSize, Double.NaN);
+		}
+		/** Set a single gpkg_tile_matrix value for a zoom level */
+		private void setValue(int z, String name, double value) {
+			if (name.equals("matrix_width")) {
+				matrixWidth[z] = (int)value;
+			} else if (name.equals("matrix_height")) {
+				matrixHeight[z] = (int)value;
+			} else if (name.equals("tile_width")) {
+				tileWidth[z] = (int)value;
+			} else if (name.equals("tile_height")) {
+				tileHeight[z] = (int)value;
+			} else if (name.equals("pixel_x_size")) {
+				pixelXSize[z] = value;
+			} else if (name.equals("pixel_y_size")) {
+				pixelYSize[z] = value;
+			}
 		}
 		/** Get the highest zoom level defined for this matrix (the most detailed)
 		 * 
-		 * @return
+		 * @return The zoom level or -1 if no zoom levels are defined
 		 */
 		public int getMaxZoom() {
 			return this.maxZoom;
 		}
+		/** Get the lowest zoom level defined for this matrix (the least detailed)
+		 * 
+		 * @return The zoom level or -1 if no zoom levels are defined
+		 */
+		public int getMinZoom() {
+			return this.minZoom;
+		}
+		/** Is the zoom level defined in this matrix?
+		 * 
+		 * @param zoom
+		 * @return
+		 */
+		public boolean isZoomDefined(int zoom) {
+			return zoom>=0 && zoom<=maxZoom && defined[zoom];
+		}
+		/** Get the zoom levels defined for this matrix, lowest first
+		 * 
+		 * @return
+		 */
+		public Set<Integer> getZoomLevels() {
+			Set<Integer> ret = new TreeSet<Integer>();
+			for (int z=0; z<=maxZoom; z++) {
+				if (defined[z]) ret.add(z);
+			}
+			return ret;
+		}
+		/** Get the extents of the tile matrix set
+		 * 
+		 * @return
+		 */
+		public BoundingBox getBoundingBox() {
+			return bbox;
+		}
 		/** Get a single pixel size for a tile at a specified zoom level
 		 * 
 		 * @param zoom The required zoom
 		 * @return double[] as X and Y pixel size or Double.NaN, Double.NaN if the zoom level does not exist
 		 */
 		public double[] getPixelSize(int zoom) {
-			double[] ret = new double[]{Double.NaN, Double.NaN};
-			
-			for (GpkgField gf : matFields.get(zoom)) {
-				if (gf.getFieldName().equals("pixel_x_size")) {
-					ret[0] = Double.valueOf(String.valueOf(gf.getValue()) );
-				} else if (gf.getFieldName().equals("pixel_y_size")) {
-					ret[1] = Double.valueOf(String.valueOf(gf.getValue()) );
-				}
-			}
-			
-			return ret;
+			if (!isZoomDefined(zoom)) return new double[]{Double.NaN, Double.NaN};
+			return new double[]{pixelXSize[zoom], pixelYSize[zoom]};
 		}
 		/** Get the tile size in pixels for a single tile at a specified zoom level
 		 * 
@@ -332,17 +547,8 @@ public class TilesTable extends GpkgTable {
 		 * @return int[] as X and Y number of pixels or -1,-1 if the zoom level does not exist
 		 */
 		public int[] getTileSize(int zoom) {
-			int[] ret = new int[]{-1,-1};
-			
-			for (GpkgField gf : matFields.get(zoom)) {
-				if (gf.getFieldName().equals("tile_width")) {
-					ret[0] = Integer.valueOf(String.valueOf(gf.getValue()) );
-				} else if (gf.getFieldName().equals("tile_height")) {
-					ret[1] = Integer.valueOf(String.valueOf(gf.getValue()) );
-				}
-			}
-			
-			return ret;
+			if (!isZoomDefined(zoom)) return new int[]{-1,-1};
+			return new int[]{tileWidth[zoom], tileHeight[zoom]};
 		}
 		/** Get the size of the matrix at the specified zoom
 		 * 
@@ -350,17 +556,85 @@ public class TilesTable extends GpkgTable {
 		 * @return int[] as width and height in tiles or -1,-1 if the zoom level does not exist
 		 */
 		public int[] getMatrixSize(int zoom) {
-			int[] ret = new int[2];
+			if (!isZoomDefined(zoom)) return new int[]{-1,-1};
+			return new int[]{matrixWidth[zoom], matrixHeight[zoom]};
+		}
+		/** Get the width of the matrix at the specified zoom
+		 * 
+		 * @param zoom The required zoom
+		 * @return The number of columns or -1 if the zoom level does not exist
+		 */
+		public int getMatrixWidth(int zoom) {
+			return isZoomDefined(zoom) ? matrixWidth[zoom] : -1;
+		}
+		/** Get the height of the matrix at the specified zoom
+		 * 
+		 * @param zoom The required zoom
+		 * @return The number of rows or -1 if the zoom level does not exist
+		 */
+		public int getMatrixHeight(int zoom) {
+			return isZoomDefined(zoom) ? matrixHeight[zoom] : -1;
+		}
+		/** Check whether a tile reference is within this matrix
+		 * 
+		 * @param x X tile reference (column)
+		 * @param y Y tile reference (row)
+		 * @param zoom Zoom level
+		 * @return True if the zoom is defined and the column and row are within the matrix
+		 */
+		public boolean isTileInMatrix(int x, int y, int zoom) {
+			if (!isZoomDefined(zoom)) return false;
+			return x >= 1 && x <= matrixWidth[zoom] && y >= 1 && y <= matrixHeight[zoom];
+		}
+		/** Get the width of a single tile at a zoom level in CRS units
+		 * 
+		 * @param zoom
+		 * @return The width or Double.NaN if the zoom level does not exist
+		 */
+		public double getTileSpanX(int zoom) {
+			return isZoomDefined(zoom) ? tileWidth[zoom] * pixelXSize[zoom] : Double.NaN;
+		}
+		/** Get the height of a single tile at a zoom level in CRS units
+		 * 
+		 * @param zoom
+		 * @return The height or Double.NaN if the zoom level does not exist
+		 */
+		public double getTileSpanY(int zoom) {
+			return isZoomDefined(zoom) ? tileHeight[zoom] * pixelYSize[zoom] : Double.NaN;
+		}
+		/** Calculate the range of tiles, at a zoom level, that cover a bounding box. The
+		 * bounding box must be in the same CRS as the tile matrix set. The range is limited
+		 * to the tiles within the matrix.
+		 * 
+		 * @param area The area to cover
+		 * @param zoom The zoom level
+		 * @return int[] as min column, max column, min row, max row (all inclusive), or
+		 * <code>Null</code> if the zoom is not defined or the area is outside the matrix.
+		 */
+		public int[] getTileRange(BoundingBox area, int zoom) {
+			if (!isZoomDefined(zoom)) return null;
 			
-			for (GpkgField gf : matFields.get(zoom)) {
-				if (gf.getFieldName().equals("matrix_width")) {
-					ret[0] = Integer.valueOf(String.valueOf(gf.getValue()) );
-				} else if (gf.getFieldName().equals("matrix_height")) {
-					ret[1] = Integer.valueOf(String.valueOf(gf.getValue()) );
-				}
-			}
+			double spanX = getTileSpanX(zoom);
+			double spanY = getTileSpanY(zoom);
 			
-			return ret;
+			// Columns from the left and rows from the top of the matrix set
+			int minCol = (int) Math.floor( (area.getMinX() - bbox.getMinX()) / spanX ) + 1;
+			int maxCol = (int) Math.ceil( (area.getMaxX() - bbox.getMinX()) / spanX );
+			int minRow = (int) Math.floor( (bbox.getMaxY() - area.getMaxY()) / spanY ) + 1;
+			int maxRow = (int) Math.ceil( (bbox.getMaxY() - area.getMinY()) / spanY );
+			
+			// A zero width or height area on a tile edge
+			if (maxCol < minCol) maxCol = minCol;
+			if (maxRow < minRow) maxRow = minRow;
+			
+			minCol = Math.max(minCol, 1);
+			minRow = Math.max(minRow, 1);
+			maxCol = Math.min(maxCol, matrixWidth[zoom]);
+			maxRow = Math.min(maxRow, matrixHeight[zoom]);
+			
+			if (minCol > maxCol || minRow > maxRow) return null;
+			
+			return new int[]{minCol, maxCol, minRow, maxRow};
 		}
 		/** Get the {@linkplain BoundingBox} of a single tile as a JTS 
 		 * Polygon Geomerty
@@ -373,20 +647,24 @@ public class TilesTable extends GpkgTable {
 		 */
 		public Geometry getTileBounds(int x, int y, int zoom) {
 			
-			int[] mXY = getMatrixSize( zoom );
-			if (x>mXY[0] || x<1 || y>mXY[1] || y<1)
+			if (!isTileInMatrix(x, y, zoom))
 				return new BoundingBoxImpl(bbox.getCoordinateReferenceSystem()).toPolygon();
 			
-			double[] pXY = getPixelSize( zoom );
-			int[] tXY = getTileSize( zoom );
+			double spanX = getTileSpanX(zoom);
+			double spanY = getTileSpanY(zoom);
 			
 			return new BoundingBoxImpl(
-					bbox.getMinX()+( pXY[0]*tXY[0]*x ),
-					bbox.getMinX()+( pXY[0]*tXY[0]*(x+1) ),
-					bbox.getMaxY()-( pXY[1]*tXY[1]*y ),
-					bbox.getMaxY()-( pXY[1]*tXY[1]*(y+1) ),
+					bbox.getMinX()+( spanX*(x-1) ),
+					bbox.getMinX()+( spanX*x ),
+					bbox.getMaxY()-( spanY*y ),
+					bbox.getMaxY()-( spanY*(y-1) ),
 					bbox.getCoordinateReferenceSystem()
 					).toPolygon();
 		}
+		/** Convert a gpkg_tile_matrix value to a double */
+		private double toDouble(Object value) {
+			if (value instanceof Number) return ((Number)value).doubleValue();
+			return Double.valueOf( String.valueOf(value) );
+		}
 	}
 }
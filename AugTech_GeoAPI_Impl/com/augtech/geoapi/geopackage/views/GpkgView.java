@@ -16,7 +16,7 @@
 package com.augtech.geoapi.geopackage.views;
 
 import com.augtech.geoapi.geopackage.GeoPackage;
-import com.augtech.geoapi.geopackage.ICursor;
+import com.augtech.geoapi.geopackage.GpkgCatalog;
 
 /** An abstract class for creating and interacting with one of the standard
  * Views within the GeoPackage
@@ -55,6 +55,7 @@ public abstract class GpkgView {
 		if (!whereClause.equals("")) sb.append(" WHERE ").append(whereClause);
 		
 		geoPackage.getDatabase().execSQL( sb.toString() );
+		geoPackage.getCatalog().invalidate(GpkgCatalog.SQLITE_MASTER);
 		
 		return true;
 	}
@@ -64,12 +65,7 @@ public abstract class GpkgView {
 	 * @return True if the table is in SQLITE_MASTER
 	 */
 	public boolean isViewInDB(GeoPackage geoPackage) {
-		// Does the table already exist?
-		boolean tExists = false;
-		ICursor c = geoPackage.getDatabase().doQuery("SQLITE_MASTER", new String[]{"tbl_name"},"tbl_name='"+viewName+"'");
-		if( c.moveToFirst() ) tExists = c.getString(0).equals(viewName);
-		c.close();
-		return tExists;
+		return geoPackage.getCatalog().isTableInDB(viewName);
 	}
 
 }
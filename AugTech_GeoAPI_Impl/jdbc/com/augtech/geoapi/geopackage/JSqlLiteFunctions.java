@@ -0,0 +1,92 @@
+/*
+ * Copyright 2013, Augmented Technologies Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.augtech.geoapi.geopackage;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import org.sqlite.Function;
+
+import com.augtech.geoapi.geopackage.geometry.GeometryDecoder;
+import com.augtech.geoapi.geopackage.table.GpkgTriggers;
+
+/** SQL functions required by the GeoPackage spatial index triggers
+ * ({@link GpkgTriggers#SPATIAL_TRIGGERS}) implemented as org.sqlite.JDBC user
+ * defined functions.<p>
+ * This is in the jdbc source folder as it needs sqlite-jdbc to compile, so it can be used 
+ * by desktop applications but not on Android. Pass an instance to {@link JSqlLiteDatabase}, 
+ * or call {@link #register(Connection)} on each new connection.<p>
+ * Each function reads the envelope from the GeoPackage binary header of the geometry
+ * BLOB passed to it. The WKB is only decoded if the header does not contain an envelope.
+ *
+ * @author Augmented Technologies Ltd.
+ *
+ */
+public class JSqlLiteFunctions implements ISQLFunctions {
+
+	/** Register all the functions on a connection. This must be done each
+	 * time a new connection is opened.
+	 *
+	 * @param connection The connection to register the functions on
+	 * @throws SQLException
+	 */
+	@Override
+	public void register(Connection connection) throws SQLException {
+		Function.create(connection, "ST_MinX", new EnvelopeFunction(0));
+		Function.create(connection, "ST_MaxX", new EnvelopeFunction(1));
+		Function.create(connection, "ST_MinY", new EnvelopeFunction(2));
+		Function.create(connection, "ST_MaxY", new EnvelopeFunction(3));
+		Function.create(connection, "ST_IsEmpty", new IsEmptyFunction());
+	}
+
+	/** Returns one value from the envelope, or NULL for empty geometries */
+	private static class EnvelopeFunction extends Function {
+		private int ordinate;
+
+		EnvelopeFunction(int ordinate) {
+			this.ordinate = ordinate;
+		}
+		@Override
+		protected void xFunc() throws SQLException {
+			if (args()!=1) throw new SQLException("Function requires a single geometry argument");
+			try {
+				double[] env = GeometryDecoder.readEnvelope( value_blob(0) );
+				if (env==null) {
+					result();
+				} else {
+					result( env[ordinate] );
+				}
+			} catch (IOException e) {
+				throw new SQLException("Unable to decode geometry: "+e.getMessage());
+			}
+		}
+	}
+
+	/** Returns 1 if the geometry is empty (or NULL), 0 otherwise */
+	private static class IsEmptyFunction extends Function {
+		@Override
+		protected void xFunc() throws SQLException {
+			if (args()!=1) throw new SQLException("Function requires a single geometry argument");
+			byte[] gpkgGeom = value_blob(0);
+			if (gpkgGeom==null || gpkgGeom.length<4) {
+				result(1);
+			} else {
+				result( (gpkgGeom[3] >> 4 & 1)==1 ? 1 : 0 );
+			}
+		}
+	}
+}
@@ -95,6 +95,28 @@ public class JCursor implements com.augtech.geoapi.geopackage.ICursor {
 		return 0;
 	}
 
+	@Override
+	public long getLong(int columnIndex) {
+		if (results==null) return 0;
+		try {
+			return results.getLong(columnIndex + colOffset);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		return 0;
+	}
+
+	@Override
+	public boolean isNull(int columnIndex) {
+		if (results==null) return true;
+		try {
+			return results.getObject(columnIndex + colOffset)==null;
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+		return true;
+	}
+
 	@Override
 	public int getColumnCount() {
 		if (results==null) return -1;
@@ -132,7 +154,7 @@ public class JCursor implements com.augtech.geoapi.geopackage.ICursor {
 	public float getFloat(int columnIndex) {
 		if (results==null) return 0;
 		try {
-			results.getFloat(columnIndex + colOffset);
+			return results.getFloat(columnIndex + colOffset);
 		} catch (SQLException e) {
 			e.printStackTrace();
 		}
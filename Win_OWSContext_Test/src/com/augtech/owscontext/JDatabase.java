@@ -14,6 +14,9 @@ import java.util.Set;
 
 import com.augtech.geoapi.geopackage.ICursor;
 import com.augtech.geoapi.geopackage.ISQLDatabase;
+import com.augtech.geoapi.geopackage.ISQLStatement;
+import com.augtech.geoapi.geopackage.JSqlLiteFunctions;
+import com.augtech.geoapi.geopackage.JSqlLiteStatement;
 
 /**
  * 
@@ -24,6 +27,11 @@ public class JDatabase implements com.augtech.geoapi.geopackage.ISQLDatabase {
 	File dbFile = null;
 	Connection connection = null;
 	static final boolean ONE_BASED = true;
+	/** The maximum number of idle prepared statements retained for re-use */
+	static final int STATEMENT_CACHE_SIZE = 20;
+	JSqlLiteStatement.Cache statementCache = new JSqlLiteStatement.Cache(STATEMENT_CACHE_SIZE);
+	/* Null until tested on the current connection */
+	Boolean rTreeEnabled = null;
 	/**
 	 * 
 	 * @param dbFile
@@ -59,7 +67,17 @@ public class JDatabase implements com.augtech.geoapi.geopackage.ISQLDatabase {
 		// create a database connection
 		try {
 			if (connection==null || connection.isClosed() ) {
+				statementCache.clear();
+				rTreeEnabled = null;
 				connection = DriverManager.getConnection("jdbc:sqlite:"+dbFile.toString());
+				
+				// Functions required by the spatial index triggers
+				try {
+					new JSqlLiteFunctions().register(connection);
+				} catch (SQLException e) {
+					e.printStackTrace();
+					rTreeEnabled = Boolean.FALSE;
+				}
 			}
 			if (connection.isReadOnly() && writeable) connection.setReadOnly(false);
 			
@@ -117,6 +135,17 @@ public class JDatabase implements com.augtech.geoapi.geopackage.ISQLDatabase {
 		return new JCursor( );
 	}
 
+	@Override
+	public ISQLStatement prepare(String sql) {
+		getDatabase(true);
+		try {
+			return statementCache.get(connection, sql);
+		} catch (SQLException e) {
+			e.printStackTrace();
+			throw new IllegalArgumentException("Unable to prepare statement: "+sql);
+		}
+	}
+
 	@Override
 	public void execSQL(String sql) {
 		getDatabase(true);
@@ -351,9 +380,66 @@ public class JDatabase implements com.augtech.geoapi.geopackage.ISQLDatabase {
 		return 0;
 	}
 
+	@Override
+	public void beginTransaction() {
+		getDatabase(true);
+		try {
+			connection.setAutoCommit(false);
+		} catch (SQLException e) {
+			e.printStackTrace();
+		}
+	}
+
+	@Override
+	public void endTransaction(boolean successful) {
+		try {
+			if (successful) {
+				connection.commit();
+			} else {
+				connection.rollback();
+			}
+		} catch (SQLException e) {
+			e.printStackTrace();
+		} finally {
+			try {
+				connection.setAutoCommit(true);
+			} catch (SQLException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
 	@Override
 	public boolean hasRTreeEnabled() {
-		return false;
+		getDatabase(true);
+		if (rTreeEnabled!=null) return rTreeEnabled.booleanValue();
+		
+		rTreeEnabled = Boolean.FALSE;
+		
+		/* The compile options are only available from 3.6.23, so if not listed
+		 * try creating a (temporary) R*Tree to see if the module is present */
+		ICursor c = doRawQuery("PRAGMA compile_options;");
+		while (c.moveToNext()) {
+			if (c.getString(0).equalsIgnoreCase("ENABLE_RTREE")) {
+				rTreeEnabled = Boolean.TRUE;
+				break;
+			}
+		}
+		c.close();
+		
+		if (!rTreeEnabled) {
+			try {
+				Statement statement = connection.createStatement();
+				statement.execute("CREATE VIRTUAL TABLE temp.rtree_test USING rtree(id, minx, maxx, miny, maxy)");
+				statement.execute("DROP TABLE temp.rtree_test");
+				statement.close();
+				rTreeEnabled = Boolean.TRUE;
+			} catch (SQLException e) {
+				// No R*Tree module
+			}
+		}
+		
+		return rTreeEnabled.booleanValue();
 	}
 
 	@Override
@@ -371,6 +457,7 @@ public class JDatabase implements com.augtech.geoapi.geopackage.ISQLDatabase {
 	@Override
 	public void close() {
 		try {
+			statementCache.clear();
 			connection.close();
 		} catch (SQLException e) {
 			e.printStackTrace();